@@ -48,10 +48,11 @@ public class MainTest {
         do{
             System.out.println("(1) Carica Dendrogramma da File");
             System.out.println("(2) Apprendi Dendrogramma da Database");
+            System.out.println("(3) Confronta le distanze sul Database");
             System.out.print("Risposta:");
             answer=Keyboard.readInt();
         }
-        while(answer<=0 || answer>2);
+        while(answer<=0 || answer>3);
         return answer;
 
     }
@@ -108,9 +109,9 @@ public class MainTest {
         out.writeObject(depth);
         int dType=-1;
         do {
-            System.out.println("Distanza: single-link (1), average-link (2):");
+            System.out.println("Distanza: single-link (1), average-link (2), complete-link (3), Ward (4):");
             dType=Keyboard.readInt();
-        }while (dType<=0 || dType>2);
+        }while (dType<=0 || dType>4);
         out.writeObject(dType);
 
         String risposta= (String) (in.readObject());
@@ -123,6 +124,41 @@ public class MainTest {
         else
             System.out.println(risposta); // stampo il messaggio di errore
     }
+    /**
+     * Metodo per apprendere sul server i dendrogrammi di tutte le distanze disponibili
+     * (single-link, average-link, complete-link, Ward) in un'unica richiesta.
+     *
+     * @throws IOException            se si verifica un errore di I/O.
+     * @throws ClassNotFoundException se si verifica un errore di deserializzazione.
+     */
+    private void compareDistancesOnServer() throws IOException, ClassNotFoundException {
+        System.out.println("Introdurre la profondita'  del dendrogramma");
+        int depth=Keyboard.readInt();
+        out.writeObject(5);
+        out.writeObject(depth);
+        out.writeObject(new int[] {1, 2, 3, 4});
+
+        String risposta= (String) (in.readObject());
+        if(risposta.equals("OK"))
+            System.out.println(in.readObject()); // stampo i dendrogrammi che il server mi sta inviando
+        else
+            System.out.println(risposta); // stampo il messaggio di errore
+    }
+    /**
+     * Metodo per aggiornare sul server l'ultimo dendrogramma appreso con le righe aggiunte
+     * alla tabella dopo il caricamento.
+     *
+     * @throws IOException            se si verifica un errore di I/O.
+     * @throws ClassNotFoundException se si verifica un errore di deserializzazione.
+     */
+    private void updateDendrogramOnServer() throws IOException, ClassNotFoundException {
+        out.writeObject(6);
+        String risposta= (String) (in.readObject());
+        if(risposta.equals("OK"))
+            System.out.println(in.readObject()); // stampo il dendrogramma aggiornato
+        else
+            System.out.println(risposta); // stampo il messaggio di errore
+    }
     /**
      * Metodo Main lato Client per avviare la comunicazione con il Server.
      *
@@ -139,8 +175,18 @@ public class MainTest {
             int scelta=main.menu();
             if(scelta==1)
                 main.loadDedrogramFromFileOnServer();
-            else
+            else if(scelta==2) {
                 main.mineDedrogramOnServer();
+                int aggiorna;
+                do {
+                    System.out.println("Aggiornare il dendrogramma con le nuove righe della tabella? (1 si', 0 no)");
+                    aggiorna=Keyboard.readInt();
+                    if(aggiorna==1)
+                        main.updateDendrogramOnServer();
+                } while(aggiorna==1);
+            }
+            else
+                main.compareDistancesOnServer();
 
 
         }
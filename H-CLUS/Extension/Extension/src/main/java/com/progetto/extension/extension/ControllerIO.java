@@ -1,5 +1,6 @@
 package com.progetto.extension.extension;
 
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -8,6 +9,7 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
@@ -45,6 +47,26 @@ public class ControllerIO {
      */
     @FXML
     private Button averageDistance;
+    /**
+     * bottone per utilizzare la distanza complete-link
+     */
+    @FXML
+    private Button completeDistance;
+    /**
+     * bottone per utilizzare la distanza di Ward
+     */
+    @FXML
+    private Button wardDistance;
+    /**
+     * bottone per annullare la scoperta in corso
+     */
+    @FXML
+    private Button cancel;
+    /**
+     * mostra l'avanzamento della scoperta in corso
+     */
+    @FXML
+    private Label progress;
     /**
      * contiene il nome del file fornito dall'utente in input
      */
@@ -144,92 +166,134 @@ public class ControllerIO {
      * utilizzando la distanza single-link
      */
     public void learningFromDbTableSD() {
-        singleDistance.setDisable(true);
-        String text;
-        try{
-            singleDistance.setDisable(false);
-            int depth = Integer.parseInt(this.depth.getText());
-            int distanceType = 1;
-            out.writeObject(1);
-            out.writeObject(depth);
-            out.writeObject(distanceType);
-            String result = (String)in.readObject();
-            if(result.equals("OK")){
-                text = ("Profondità: "+depth+"\n");
-                text += ("Distanza utilizzata: single-link \n");
-                text += (String)in.readObject();
-            }else throw new ServerException(result);
-            URL path = getClass().getResource("/com/progetto/extension/extension/Output.fxml");
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(path);
-            loader.setBuilderFactory(new JavaFXBuilderFactory());
-            Parent root = loader.load(path.openStream());
-            ControllerIO contr = loader.getController();
-            contr.setOutputText(text);
-            Scene scene = new Scene(root);
-            Stage stage = new Stage();
-            stage.setScene(scene);
-            stage.setResizable(false);
-            stage.setTitle("H-Clus");
-            stage.getIcons().add(new Image("file:src/com/progetto/extension/extension//icon.png"));
-            stage.setX(120);
-            stage.setY(430);
-            stage.show();
-        } catch (IOException e) {
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        } catch (ServerException e) {
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        } catch (ClassNotFoundException e) {
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        } catch (NumberFormatException e){
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        }
+        learningFromDbTable(1, "single-link");
     }
     /**
      * metodo per la scoperta di un dendrogramma di cluster mediante le tabelle DB
      * utilizzando la distanza average-link
      */
     public void learningFromDbTableAD() {
-        averageDistance.setDisable(true);
-        String text;
-        try{
-            averageDistance.setDisable(false);
-            int depth = Integer.parseInt(this.depth.getText());
-            int distanceType = 2;
-            out.writeObject(1);
+        learningFromDbTable(2, "average-link");
+    }
+    /**
+     * metodo per la scoperta di un dendrogramma di cluster mediante le tabelle DB
+     * utilizzando la distanza complete-link
+     */
+    public void learningFromDbTableCD() {
+        learningFromDbTable(3, "complete-link");
+    }
+    /**
+     * metodo per la scoperta di un dendrogramma di cluster mediante le tabelle DB
+     * utilizzando la distanza di Ward
+     */
+    public void learningFromDbTableWD() {
+        learningFromDbTable(4, "Ward");
+    }
+    /**
+     * metodo per la scoperta di un dendrogramma di cluster mediante le tabelle DB.
+     * La risposta del server viene letta in background, mostrando l'avanzamento,
+     * in modo che l'interfaccia resti attiva e la scoperta possa essere annullata.
+     * @param distanceType tipo di distanza da utilizzare (1 single-link, 2 average-link,
+     *                     3 complete-link, 4 Ward)
+     * @param distanceName nome della distanza da mostrare nell'output
+     */
+    private void learningFromDbTable(int distanceType, String distanceName) {
+        int depth;
+        try {
+            depth = Integer.parseInt(this.depth.getText());
+            out.writeObject(3);
             out.writeObject(depth);
             out.writeObject(distanceType);
-            String result = (String)in.readObject();
-            if(result.equals("OK")){
-                text = ("Profondità: "+depth+"\n");
-                text += ("Distanza utilizzata: average-link \n");
-                text += (String)in.readObject();
-            }else throw new ServerException(result);
-            URL path = getClass().getResource("/com/progetto/extension/extension/Output.fxml");
-            FXMLLoader loader = new FXMLLoader();
-            loader.setLocation(path);
-            loader.setBuilderFactory(new JavaFXBuilderFactory());
-            Parent root = loader.load(path.openStream());
-            ControllerIO contr = loader.getController();
-            contr.setOutputText(text);
-            Scene scene = new Scene(root);
-            Stage stage = new Stage();
-            stage.setScene(scene);
-            stage.setResizable(false);
-            stage.setTitle("H-Clus");
-            stage.getIcons().add(new Image("file:src/resources/icon.png"));
-            stage.setX(120);
-            stage.setY(430);
-            stage.show();
         } catch (IOException e) {
             com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        } catch (ServerException e) {
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
-        } catch (ClassNotFoundException e) {
-            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
+            return;
         } catch (NumberFormatException e){
             com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
+            return;
         }
+
+        Task<String> task = new Task<String>() {
+            @Override
+            protected String call() throws Exception {
+                String result = (String) in.readObject();
+                while (result.startsWith("PROGRESS ")) {
+                    updateMessage(result.substring("PROGRESS ".length()));
+                    result = (String) in.readObject();
+                }
+                if (!result.equals("OK"))
+                    throw new ServerException(result);
+                String text = ("Profondità: "+depth+"\n");
+                text += ("Distanza utilizzata: " + distanceName + " \n");
+                text += (String) in.readObject();
+                return text;
+            }
+        };
+        progress.textProperty().bind(task.messageProperty());
+        setLearning(true);
+        task.setOnSucceeded(event -> {
+            setLearning(false);
+            try {
+                showOutput(task.getValue());
+            } catch (IOException e) {
+                com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
+            }
+        });
+        task.setOnFailed(event -> {
+            setLearning(false);
+            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ task.getException(), "Please check the values provided and try again");
+        });
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+    /**
+     * metodo che richiede al server l'annullamento della scoperta in corso
+     */
+    public void cancelLearning() {
+        try {
+            cancel.setDisable(true);
+            out.writeObject(4);
+        } catch (IOException e) {
+            com.progetto.extension.extension.Utility.errorWindow("Error", ""+ e, "Please check the values provided and try again");
+        }
+    }
+    /**
+     * abilita o disabilita i comandi durante la scoperta
+     * @param learning true se la scoperta è in corso
+     */
+    private void setLearning(boolean learning) {
+        singleDistance.setDisable(learning);
+        averageDistance.setDisable(learning);
+        completeDistance.setDisable(learning);
+        wardDistance.setDisable(learning);
+        cancel.setDisable(!learning);
+        if (!learning) {
+            progress.textProperty().unbind();
+            progress.setText("");
+        }
+    }
+    /**
+     * apre la finestra che mostra il risultato fornito dal server
+     * @param text risultato da mostrare
+     * @throws IOException
+     */
+    private void showOutput(String text) throws IOException {
+        URL path = getClass().getResource("/com/progetto/extension/extension/Output.fxml");
+        FXMLLoader loader = new FXMLLoader();
+        loader.setLocation(path);
+        loader.setBuilderFactory(new JavaFXBuilderFactory());
+        Parent root = loader.load(path.openStream());
+        ControllerIO contr = loader.getController();
+        contr.setOutputText(text);
+        Scene scene = new Scene(root);
+        Stage stage = new Stage();
+        stage.setScene(scene);
+        stage.setResizable(false);
+        stage.setTitle("H-Clus");
+        stage.getIcons().add(new Image("file:src/resources/icon.png"));
+        stage.setX(120);
+        stage.setY(430);
+        stage.show();
     }
     /**
      * metodo che si occupa dell'opzione di salvataggio su file il dendrogramma di cluster scoperti
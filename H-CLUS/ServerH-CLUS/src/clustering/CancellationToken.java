@@ -0,0 +1,27 @@
+package clustering;
+
+/**
+ * La classe CancellationToken permette di annullare da un altro thread un clustering
+ * in corso. Il clustering controlla il token tra una fusione e l'altra e durante la
+ * ricerca della coppia più vicina, e si ferma mantenendo i livelli già completati.
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Richiede l'annullamento del clustering.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Indica se è stato richiesto l'annullamento.
+     *
+     * @return true se il clustering deve essere annullato.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
\ No newline at end of file
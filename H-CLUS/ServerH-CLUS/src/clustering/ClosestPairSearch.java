@@ -0,0 +1,165 @@
+package clustering;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * La classe ClosestPairSearch cerca la coppia (i, j), con i minore di j, di distanza
+ * minima tra count elementi.
+ * La ricerca può essere suddivisa tra più thread: le righe i sono divise in blocchi
+ * contigui con circa lo stesso numero di coppie, tenendo conto che la riga i contiene
+ * count-1-i coppie. Ogni blocco trova il suo minimo e i minimi sono confrontati
+ * nell'ordine dei blocchi, così a parità di distanza vince sempre la prima coppia in
+ * ordine lessicografico, come nella ricerca sequenziale.
+ * La ricerca controlla i criteri di arresto a ogni riga e, se il clustering deve
+ * fermarsi, termina senza un risultato valido.
+ */
+class ClosestPairSearch {
+
+    /**
+     * Numero minimo di coppie per cui la ricerca viene suddivisa tra più thread.
+     */
+    private static final long PARALLEL_THRESHOLD = 20000;
+
+    /**
+     * Interfaccia della funzione che restituisce la distanza tra due elementi.
+     */
+    interface PairDistance {
+        /**
+         * Restituisce la distanza tra gli elementi in posizione i e j.
+         *
+         * @param i la posizione del primo elemento.
+         * @param j la posizione del secondo elemento, maggiore di i.
+         * @return la distanza tra i due elementi.
+         */
+        double distance(int i, int j);
+    }
+
+    private int index1 = -1; // posizione del primo elemento della coppia più vicina
+    private int index2 = -1; // posizione del secondo elemento della coppia più vicina
+    private double minDistance = Double.MAX_VALUE; // distanza della coppia più vicina
+    private boolean stopped = false; // true se la ricerca è stata interrotta
+
+    /**
+     * Cerca la coppia di distanza minima tra count elementi.
+     *
+     * @param count    il numero di elementi.
+     * @param distance la funzione di distanza tra elementi.
+     * @param pool     il pool di thread da usare, oppure null per la ricerca sequenziale.
+     * @param limits   i criteri di arresto.
+     * @return il risultato della ricerca.
+     */
+    static ClosestPairSearch find(int count, PairDistance distance, ForkJoinPool pool, MiningLimits limits) {
+        long pairs = (long) count * (count - 1) / 2;
+        if (pool == null || pool.getParallelism() < 2 || pairs < PARALLEL_THRESHOLD) {
+            return scan(0, count, count, distance, limits);
+        }
+
+        // Divide le righe in blocchi con circa lo stesso numero di coppie
+        int blocks = pool.getParallelism() * 4;
+        long pairsPerBlock = pairs / blocks + 1;
+        List<Callable<ClosestPairSearch>> tasks = new ArrayList<>();
+        int from = 0;
+        long accumulated = 0;
+        for (int i = 0; i < count; i++) {
+            accumulated += count - 1 - i;
+            if (accumulated >= pairsPerBlock || i == count - 1) {
+                final int start = from;
+                final int end = i + 1;
+                tasks.add(() -> scan(start, end, count, distance, limits));
+                from = end;
+                accumulated = 0;
+            }
+        }
+
+        // Riduce i minimi nell'ordine dei blocchi
+        ClosestPairSearch result = new ClosestPairSearch();
+        try {
+            for (Future<ClosestPairSearch> future : pool.invokeAll(tasks)) {
+                ClosestPairSearch partial = future.get();
+                if (partial.stopped) {
+                    return partial;
+                }
+                if (partial.minDistance < result.minDistance) {
+                    result = partial;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ricerca della coppia più vicina interrotta", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore durante la ricerca della coppia più vicina", e.getCause());
+        }
+        return result;
+    }
+
+    /**
+     * Cerca in modo sequenziale la coppia di distanza minima con il primo elemento
+     * nelle righe da from (incluso) a to (escluso).
+     *
+     * @param from     la prima riga.
+     * @param to       la riga successiva all'ultima.
+     * @param count    il numero di elementi.
+     * @param distance la funzione di distanza tra elementi.
+     * @param limits   i criteri di arresto.
+     * @return il risultato della ricerca nelle righe specificate.
+     */
+    private static ClosestPairSearch scan(int from, int to, int count, PairDistance distance, MiningLimits limits) {
+        ClosestPairSearch result = new ClosestPairSearch();
+        for (int i = from; i < to; i++) {
+            if (limits.mustStop()) {
+                result.stopped = true;
+                return result;
+            }
+            for (int j = i + 1; j < count; j++) {
+                double dist = distance.distance(i, j);
+                if (dist < result.minDistance) {
+                    result.minDistance = dist;
+                    result.index1 = i;
+                    result.index2 = j;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indica se la ricerca è stata interrotta dai criteri di arresto.
+     *
+     * @return true se il risultato non è valido perché la ricerca è stata interrotta.
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Restituisce la posizione del primo elemento della coppia più vicina.
+     *
+     * @return la posizione del primo elemento, oppure -1 se nessuna coppia è stata trovata.
+     */
+    int getIndex1() {
+        return index1;
+    }
+
+    /**
+     * Restituisce la posizione del secondo elemento della coppia più vicina.
+     *
+     * @return la posizione del secondo elemento, oppure -1 se nessuna coppia è stata trovata.
+     */
+    int getIndex2() {
+        return index2;
+    }
+
+    /**
+     * Restituisce la distanza della coppia più vicina.
+     *
+     * @return la distanza minima trovata.
+     */
+    double getMinDistance() {
+        return minDistance;
+    }
+}
\ No newline at end of file
@@ -3,15 +3,33 @@ package clustering;
 import data.Data;
 
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 /**
  * La classe Cluster rappresenta un insieme di dati raggruppati (cluster).
+ * Gli indici dei campioni sono memorizzati in un vettore di interi ordinato e senza
+ * duplicati.
  * Implementa le interfacce Iterable<Integer>, Cloneable e Serializable.
  */
 public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
-    private Set<Integer> clusteredData = new TreeSet<>();
+    private int[] clusteredData = new int[0]; // indici dei campioni in ordine crescente
+    private transient ClusterStatistics statistics; // riassunto degli esempi, se calcolato
+
+    /**
+     * Costruttore che crea un cluster vuoto.
+     */
+    public Cluster() {
+    }
+
+    /**
+     * Costruttore che crea un cluster con gli indici specificati, senza copiarli.
+     *
+     * @param sortedIds gli indici dei campioni, in ordine crescente e senza duplicati.
+     */
+    Cluster(int[] sortedIds) {
+        this.clusteredData = sortedIds;
+    }
 
     /**
      * Aggiunge l'indice di un campione al cluster.
@@ -19,7 +37,17 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
      * @param id l'indice del campione da aggiungere al cluster.
      */
     void addData(int id) {
-        clusteredData.add(id); // TreeSet gestisce in automatico i duplicati.
+        int position = Arrays.binarySearch(clusteredData, id);
+        if (position >= 0) {
+            return; // il campione è già presente.
+        }
+        position = -position - 1;
+        int[] newData = new int[clusteredData.length + 1];
+        System.arraycopy(clusteredData, 0, newData, 0, position);
+        newData[position] = id;
+        System.arraycopy(clusteredData, position, newData, position + 1, clusteredData.length - position);
+        clusteredData = newData;
+        statistics = null;
     }
     /**
      * Restituisce la dimensione del cluster.
@@ -27,16 +55,58 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
      * @return il numero di campioni nel cluster.
      */
     public int getSize() {
-        return clusteredData.size();
+        return clusteredData.length;
+    }
+    /**
+     * Restituisce l'indice minimo tra i campioni del cluster.
+     *
+     * @return il primo indice del cluster.
+     */
+    int getFirst() {
+        return clusteredData[0];
     }
     /**
-     * Restituisce un iteratore per gli elementi del cluster.
+     * Restituisce le statistiche degli esempi del cluster, calcolandole in tempo
+     * O(|C|·d) solo se non sono già disponibili per il dataset specificato: i cluster
+     * ottenuti con {@link #mergeCluster(Cluster)} le ricevono già combinate.
      *
-     * @return un iteratore per gli indici dei campioni nel cluster.
+     * @param data il dataset contenente gli esempi del cluster.
+     * @return le statistiche del cluster.
+     */
+    public ClusterStatistics getStatistics(Data data) {
+        ClusterStatistics s = statistics;
+        if (s == null || !s.isOf(data)) {
+            s = new ClusterStatistics(this, data);
+            statistics = s;
+        }
+        return s;
+    }
+
+    /**
+     * Restituisce un iteratore per gli elementi del cluster. L'iteratore restituito
+     * permette di leggere gli indici come int con {@code nextInt()}, senza conversione
+     * in oggetti Integer.
+     *
+     * @return un iteratore per gli indici dei campioni nel cluster, in ordine crescente.
      */
     @Override
-    public Iterator<Integer> iterator() {
-        return clusteredData.iterator();
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < clusteredData.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if (i >= clusteredData.length) {
+                    throw new NoSuchElementException();
+                }
+                return clusteredData[i++];
+            }
+        };
     }
 
     /**
@@ -47,26 +117,51 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
     @Override
     public Object clone() {
         Cluster copyC = new Cluster();
-        for (Integer id : clusteredData) {
-            copyC.addData(id);
-        }
+        copyC.clusteredData = clusteredData.clone();
+        copyC.statistics = statistics; // le statistiche non sono modificabili
         return copyC;
     }
 
     /**
-     * Unisce questo cluster con un altro cluster.
+     * Unisce questo cluster con un altro cluster, fondendo in tempo lineare i due
+     * vettori ordinati di indici. Se entrambi i cluster hanno le statistiche calcolate
+     * sullo stesso dataset e sono disgiunti, le statistiche dell'unione sono ottenute
+     * combinandole in tempo O(d).
      *
      * @param c il cluster da unire con questo cluster.
      * @return un nuovo cluster risultante dall'unione di questo cluster e del
      *         cluster dato.
      */
     public Cluster mergeCluster(Cluster c) {
-        Cluster newC = new Cluster();
-        for (Integer id : this) {
-            newC.addData(id);
+        int[] a = this.clusteredData;
+        int[] b = c.clusteredData;
+        int[] merged = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                merged[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                merged[k++] = b[j++];
+            } else {
+                merged[k++] = a[i++]; // indice presente in entrambi i cluster.
+                j++;
+            }
+        }
+        while (i < a.length) {
+            merged[k++] = a[i++];
         }
-        for (Integer id : c) {
-            newC.addData(id);
+        while (j < b.length) {
+            merged[k++] = b[j++];
+        }
+
+        Cluster newC = new Cluster();
+        newC.clusteredData = k == merged.length ? merged : Arrays.copyOf(merged, k);
+        ClusterStatistics s1 = statistics;
+        ClusterStatistics s2 = c.statistics;
+        if (k == merged.length && s1 != null && s2 != null && s2.isOf(s1.getData())) {
+            newC.statistics = s1.combine(s2);
         }
         return newC;
     }
@@ -78,10 +173,9 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
-        Iterator<Integer> it = clusteredData.iterator();
-        while (it.hasNext()) {
-            str.append(it.next());
-            if (it.hasNext()) str.append(",");
+        for (int i = 0; i < clusteredData.length; i++) {
+            str.append(clusteredData[i]);
+            if (i < clusteredData.length - 1) str.append(",");
         }
         return str.toString();
     }
@@ -96,7 +190,7 @@ public class Cluster implements Iterable<Integer>, Cloneable, Serializable {
      */
     public String toString(Data data) {
         StringBuilder str = new StringBuilder();
-        for (Integer id : clusteredData) {
+        for (int id : clusteredData) {
             str.append("<").append(data.getExample(id)).append(">");
         }
         return str.toString();
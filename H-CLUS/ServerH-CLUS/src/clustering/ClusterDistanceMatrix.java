@@ -0,0 +1,239 @@
+package clustering;
+
+import data.Data;
+import data.DistanceMatrix;
+import data.DistancePrecision;
+import data.MappedDistanceMatrix;
+import data.QuantizedDistanceMatrix;
+import distance.LanceWilliamsDistance;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * La classe ClusterDistanceMatrix memorizza le distanze tra i cluster attivi in una
+ * matrice triangolare superiore condensata di n(n-1)/2 elementi.
+ * Ogni cluster occupa lo slot del suo esempio di indice minimo: dopo la fusione dei
+ * cluster negli slot a e b, con a minore di b, il cluster fuso occupa lo slot a e le
+ * sue distanze sono aggiornate con la formula di Lance-Williams.
+ * Le distanze sono memorizzate con la precisione del dataset, vedi
+ * {@link Data#withDistancePrecision(DistancePrecision)}: in double, in float oppure
+ * quantizzate su 16 bit con la scala della matrice delle distanze tra gli esempi. La
+ * quantizzazione è usata solo se l'aggiornamento non esce dall'intervallo delle
+ * distanze iniziali, vedi {@link LanceWilliamsDistance#isBoundedByInputs()}, e anche
+ * le distanze aggiornate sono arrotondate al passo più vicino; altrimenti le distanze
+ * sono memorizzate in float.
+ * Se la matrice non entra nello heap viene memorizzata in un file temporaneo mappato
+ * in memoria.
+ */
+class ClusterDistanceMatrix {
+
+    private static final int LEVELS = 65535; // valore massimo di una distanza quantizzata
+
+    private final int n; // numero di slot
+    private final double[] matrix; // distanze in double, oppure null
+    private final float[] floats; // distanze in float, oppure null
+    private final short[] levels; // distanze quantizzate, da leggere senza segno, oppure null
+    private final double scale; // ampiezza di un passo di quantizzazione
+    private final MappedDistanceMatrix mapped; // matrice mappata su file, se le altre sono null
+    private final int[] size; // peso totale degli esempi del cluster in ogni slot
+
+    /**
+     * Costruttore che calcola le distanze tra i cluster del livello base, con un esempio
+     * per cluster. Se la matrice delle distanze tra gli esempi è già stata calcolata le
+     * distanze sono copiate da essa, altrimenti sono calcolate direttamente dagli esempi
+     * senza memorizzare la matrice nei dati.
+     * La matrice è tenuta nello heap solo se entra nella memoria disponibile insieme alla
+     * matrice degli esempi, se presente nello heap, e ai byte riservati alle matrici di
+     * altri miner in esecuzione; altrimenti è memorizzata su file.
+     *
+     * @param n             il numero di cluster del livello base.
+     * @param distance      la misura di distanza tra cluster.
+     * @param data          i dati contenenti gli esempi.
+     * @param reservedBytes i byte dello heap riservati ad altre matrici tra cluster.
+     */
+    ClusterDistanceMatrix(int n, LanceWilliamsDistance distance, Data data, long reservedBytes) {
+        this.n = n;
+        this.size = new int[n];
+        DistanceMatrix source = data.getComputedDistanceMatrix();
+        long sourceBytes = source != null ? source.memorySize() : 0;
+        int bytesPerEntry = bytesPerEntry(distance, data);
+        double[] matrix = null;
+        float[] floats = null;
+        short[] levels = null;
+        double scale = 1.0;
+        MappedDistanceMatrix mapped = null;
+        int entries = (int) ((long) n * (n - 1) / 2);
+        if (MappedDistanceMatrix.exceedsHeap(n, bytesPerEntry, sourceBytes + reservedBytes)) {
+            mapped = createMapped(n);
+        } else if (bytesPerEntry == Short.BYTES) {
+            levels = new short[entries];
+            scale = QuantizedDistanceMatrix.scaleOf(data);
+        } else if (bytesPerEntry == Float.BYTES) {
+            floats = new float[entries];
+        } else {
+            matrix = new double[entries];
+        }
+        this.matrix = matrix;
+        this.floats = floats;
+        this.levels = levels;
+        this.scale = scale;
+        this.mapped = mapped;
+
+        for (int i = 0; i < n; i++) {
+            size[i] = data.getWeight(i);
+        }
+        if (source == null) {
+            // Arrotonda come la matrice quantizzata degli esempi, così il risultato non
+            // dipende dal fatto che questa fosse già stata calcolata.
+            double step = data.getDistancePrecision() == DistancePrecision.QUANTIZED_16
+                    ? QuantizedDistanceMatrix.scaleOf(data) : 0;
+            data.computeDistances((i, j, d) -> {
+                double example = step > 0 ? Math.min(LEVELS, Math.round(d / step)) * step : d;
+                set(i, j, distance.initial(example, size[i], size[j]));
+            });
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                set(i, j, distance.initial(source.get(i, j), size[i], size[j]));
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di byte con cui è memorizzata nello heap ogni distanza tra
+     * cluster: 2 se i dati sono quantizzati e l'aggiornamento non esce dall'intervallo
+     * delle distanze iniziali, 4 per le altre precisioni ridotte, 8 in double.
+     *
+     * @param distance la misura di distanza tra cluster.
+     * @param data     i dati da clusterizzare.
+     * @return il numero di byte per distanza.
+     */
+    static int bytesPerEntry(LanceWilliamsDistance distance, Data data) {
+        DistancePrecision precision = data.getDistancePrecision();
+        if (precision == DistancePrecision.QUANTIZED_16 && distance.isBoundedByInputs()) {
+            return Short.BYTES;
+        }
+        return precision == DistancePrecision.DOUBLE ? Double.BYTES : Float.BYTES;
+    }
+
+    /**
+     * Crea la matrice mappata su file nella cartella indicata dalla proprietà di
+     * sistema {@code hclus.distance.dir}, o nella cartella temporanea di sistema.
+     *
+     * @param n il numero di slot.
+     * @return la matrice mappata.
+     * @throws UncheckedIOException se il file non può essere creato.
+     */
+    private static MappedDistanceMatrix createMapped(int n) {
+        String directory = System.getProperty("hclus.distance.dir", System.getProperty("java.io.tmpdir"));
+        try {
+            return MappedDistanceMatrix.createTemporary(n, Paths.get(directory));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile creare la matrice delle distanze in " + directory, e);
+        }
+    }
+
+    /**
+     * Restituisce lo scostamento della riga i nella matrice condensata: la distanza
+     * tra gli slot i e j, con j maggiore di i, si trova in posizione rowOffset(i) + j.
+     *
+     * @param i lo slot della riga.
+     * @return lo scostamento della riga.
+     */
+    private int rowOffset(int i) {
+        return (int) ((long) i * n - (long) i * (i + 1) / 2 - i - 1);
+    }
+
+    /**
+     * Restituisce la distanza tra i cluster negli slot i e j.
+     *
+     * @param i il primo slot.
+     * @param j il secondo slot, diverso da i.
+     * @return la distanza tra i due cluster.
+     */
+    double get(int i, int j) {
+        int k = i < j ? rowOffset(i) + j : rowOffset(j) + i;
+        if (matrix != null) {
+            return matrix[k];
+        } else if (floats != null) {
+            return floats[k];
+        } else if (levels != null) {
+            return Short.toUnsignedInt(levels[k]) * scale;
+        }
+        return mapped.get(i, j);
+    }
+
+    /**
+     * Modifica la distanza tra i cluster negli slot i e j.
+     *
+     * @param i        il primo slot.
+     * @param j        il secondo slot, diverso da i.
+     * @param distance la nuova distanza.
+     */
+    private void set(int i, int j, double distance) {
+        int k = i < j ? rowOffset(i) + j : rowOffset(j) + i;
+        if (matrix != null) {
+            matrix[k] = distance;
+        } else if (floats != null) {
+            floats[k] = (float) distance;
+        } else if (levels != null) {
+            levels[k] = (short) Math.max(0, Math.min(LEVELS, Math.round(distance / scale)));
+        } else {
+            mapped.set(i, j, distance);
+        }
+    }
+
+    /**
+     * Restituisce il numero di byte occupati nello heap dalle distanze e dalle
+     * dimensioni dei cluster.
+     *
+     * @return la memoria occupata nello heap, senza la matrice su file.
+     */
+    long memorySize() {
+        long bytes = 4L * size.length;
+        if (matrix != null) {
+            bytes += 8L * matrix.length;
+        } else if (floats != null) {
+            bytes += 4L * floats.length;
+        } else if (levels != null) {
+            bytes += 2L * levels.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Restituisce la dimensione del cluster nello slot specificato.
+     *
+     * @param slot lo slot del cluster.
+     * @return il peso totale degli esempi del cluster.
+     */
+    int getSize(int slot) {
+        return size[slot];
+    }
+
+    /**
+     * Fonde i cluster negli slot a e b aggiornando con la formula di Lance-Williams
+     * le distanze tra il cluster fuso, che occupa lo slot a, e gli altri cluster attivi.
+     *
+     * @param a        lo slot del primo cluster, minore di b.
+     * @param b        lo slot del secondo cluster.
+     * @param slots    gli slot dei cluster attivi.
+     * @param count    il numero di cluster attivi.
+     * @param distance la misura di distanza usata per l'aggiornamento.
+     */
+    void merge(int a, int b, int[] slots, int count, LanceWilliamsDistance distance) {
+        double dab = get(a, b);
+        for (int p = 0; p < count; p++) {
+            int k = slots[p];
+            if (k != a && k != b) {
+                double dka = get(k, a);
+                double dkb = get(k, b);
+                set(k, a, distance.update(dka, dkb, dab, size[a], size[b], size[k]));
+            }
+        }
+        size[a] += size[b];
+    }
+}
\ No newline at end of file
@@ -3,6 +3,7 @@ package clustering;
 import data.Data;
 import distance.ClusterDistance;
 import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * La classe ClusterSet rappresenta un insieme di cluster e fornisce metodi per
@@ -22,6 +23,16 @@ class ClusterSet implements Serializable {
 
         C=new Cluster[k];
     }
+
+    /**
+     * Costruttore che crea il ClusterSet con i cluster specificati, già distinti.
+     *
+     * @param clusters i cluster che formano l'insieme, nell'ordine in cui compaiono.
+     */
+    ClusterSet(Cluster[] clusters) {
+        C = clusters;
+        lastClusterIndex = clusters.length;
+    }
     /**
      * Aggiunge un cluster al ClusterSet, evitando duplicati.
      *
@@ -51,14 +62,14 @@ class ClusterSet implements Serializable {
      * @return una stringa che rappresenta il ClusterSet.
      */
     public String toString(){
-        String str="";
+        StringBuilder str=new StringBuilder();
         for(int i=0;i<C.length;i++){
             if (C[i]!=null){
-                str+="cluster"+i+":"+C[i]+"\n";
+                str.append("cluster").append(i).append(":").append(C[i]).append("\n");
 
             }
         }
-        return str;
+        return str.toString();
 
     }
 
@@ -72,14 +83,14 @@ class ClusterSet implements Serializable {
      *         campioni.
      */
     String toString(Data data){
-        String str="";
+        StringBuilder str=new StringBuilder();
         for(int i=0;i<C.length;i++){
             if (C[i]!=null){
-                str+="cluster"+i+":"+C[i].toString(data)+"\n";
+                str.append("cluster").append(i).append(":").append(C[i].toString(data)).append("\n");
 
             }
         }
-        return str;
+        return str.toString();
 
     }
 
@@ -93,14 +104,21 @@ class ClusterSet implements Serializable {
      * Unisce i due cluster più vicini in base alla misura di distanza fornita, e
      * restituisce un nuovo insieme di cluster con un cluster in meno.
      *
-     * @param distance l'istanza di {@code ClusterDistance} utilizzata per calcolare
-     *                 la distanza tra cluster.
-     * @param data     i dati contenenti gli esempi che formano i cluster.
-     * @return un nuovo {@code ClusterSet} con i due cluster più vicini uniti.
+     * @param distance   l'istanza di {@code ClusterDistance} utilizzata per calcolare
+     *                   la distanza tra cluster.
+     * @param data       i dati contenenti gli esempi che formano i cluster.
+     * @param dendrogram il dendrogramma in cui registrare la fusione.
+     * @param pool       il pool di thread su cui suddividere la ricerca della coppia più
+     *                   vicina, oppure null per la ricerca sequenziale.
+     * @param limits     i criteri di arresto.
+     * @return un nuovo {@code ClusterSet} con i due cluster più vicini uniti, oppure
+     * null se la loro distanza supera la distanza massima di fusione o se la ricerca
+     * è stata interrotta.
      * @throws IllegalStateException se ci sono meno di due cluster nell'insieme.
      */
 
-    ClusterSet mergeClosestClusters(ClusterDistance distance, Data data) {
+    ClusterSet mergeClosestClusters(ClusterDistance distance, Data data, Dendrogram dendrogram, ForkJoinPool pool,
+                                    MiningLimits limits) {
 
         if (lastClusterIndex < 2) {
             // eccezzione da poter inserire nel lab 3.
@@ -108,40 +126,43 @@ class ClusterSet implements Serializable {
 
         }
 
-        int mergeIndex1 = -1;
-        int mergeIndex2 = -1;
-        double minDistance = Double.MAX_VALUE;
-
         // Trova la coppia di cluster più vicini
-        for (int i = 0; i < lastClusterIndex; i++) {
-            for (int j = i + 1; j < lastClusterIndex; j++) {
-                double dist = distance.distance(C[i], C[j], data);
-                if (dist < minDistance) {
-                    minDistance = dist;
-                    mergeIndex1 = i;
-                    mergeIndex2 = j;
-                }
-            }
+        ClosestPairSearch closest = ClosestPairSearch.find(lastClusterIndex,
+                (i, j) -> distance.distance(C[i], C[j], data), pool, limits);
+        int mergeIndex1 = closest.getIndex1();
+        int mergeIndex2 = closest.getIndex2();
+        if (closest.isStopped() || limits.exceedsHeight(closest.getMinDistance())) {
+            return null;
         }
 
-        // Fonde i due cluster più vicini
-        Cluster mergedCluster = C[mergeIndex1].mergeCluster(C[mergeIndex2]);
+        dendrogram.addMerge(C[mergeIndex1].getFirst(), C[mergeIndex2].getFirst(), closest.getMinDistance());
+        return mergeClusters(mergeIndex1, mergeIndex2);
+
+    }
+
+    /**
+     * Fonde i cluster nelle posizioni specificate e restituisce un nuovo insieme di
+     * cluster con un cluster in meno. Il cluster risultante dalla fusione prende il
+     * posto del cluster in posizione index1.
+     *
+     * @param index1 la posizione del primo cluster da fondere.
+     * @param index2 la posizione del secondo cluster da fondere, maggiore di index1.
+     * @return un nuovo {@code ClusterSet} con i due cluster specificati uniti.
+     */
+    ClusterSet mergeClusters(int index1, int index2) {
+        // Fonde i due cluster specificati
+        Cluster mergedCluster = C[index1].mergeCluster(C[index2]);
 
         // Crea un nuovo ClusterSet con un cluster in meno
         ClusterSet newClusterSet = new ClusterSet(lastClusterIndex - 1);
 
-        // Aggiunge tutti gli altri cluster tranne i due cluster fusi
+        // Copia tutti gli altri cluster tranne i due cluster fusi; i cluster sono
+        // già distinti, quindi non serve il controllo dei duplicati di add().
         for (int i = 0; i < lastClusterIndex; i++) {
-            if (i != mergeIndex1 && i != mergeIndex2) // controlla se è diverso dal cluster1 e dal cluster2
-            {
-                newClusterSet.add(C[i]); // aggiunge i clusters in posizione di i
-
-            }
-
-            else if (i == mergeIndex1) // controlla se la prima posizione è il cluster 1 allora fa il merge
-
-            {
-                newClusterSet.add(mergedCluster);
+            if (i == index1) {
+                newClusterSet.C[newClusterSet.lastClusterIndex++] = mergedCluster;
+            } else if (i != index2) {
+                newClusterSet.C[newClusterSet.lastClusterIndex++] = C[i];
             }
         }
 
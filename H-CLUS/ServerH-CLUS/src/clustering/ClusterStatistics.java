@@ -0,0 +1,149 @@
+package clustering;
+
+import data.Data;
+import data.Example;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * La classe ClusterStatistics riassume gli esempi di un cluster con il peso totale, la
+ * somma pesata dei valori di ogni attributo e la somma pesata delle norme al quadrato.
+ * Da queste si ricavano in tempo O(d) il centroide e la somma dei quadrati delle
+ * distanze dal centroide; le statistiche di due cluster disgiunti si combinano in tempo
+ * O(d), senza rileggere gli esempi.
+ * Le istanze non sono modificabili.
+ */
+public final class ClusterStatistics {
+    private final Data data; // dataset da cui sono state calcolate
+    private final long size; // peso totale degli esempi
+    private final double[] sum; // somma pesata dei valori di ogni attributo
+    private final double squaredNorm; // somma pesata delle norme al quadrato degli esempi
+
+    /**
+     * Costruttore che calcola le statistiche di un cluster dai suoi esempi.
+     *
+     * @param cluster il cluster.
+     * @param data    il dataset contenente gli esempi del cluster.
+     */
+    ClusterStatistics(Cluster cluster, Data data) {
+        this.data = data;
+        this.sum = new double[data.getNumberOfAttributes()];
+        long totalWeight = 0;
+        double norm = 0;
+        for (PrimitiveIterator.OfInt it = cluster.iterator(); it.hasNext(); ) {
+            int index = it.nextInt();
+            int weight = data.getWeight(index);
+            Example example = data.getExample(index);
+            for (int a = 0; a < sum.length; a++) {
+                double value = example.getValue(a);
+                sum[a] += weight * value;
+                norm += weight * value * value;
+            }
+            totalWeight += weight;
+        }
+        this.size = totalWeight;
+        this.squaredNorm = norm;
+    }
+
+    /**
+     * Costruttore che combina le statistiche di due cluster disgiunti.
+     *
+     * @param s1 le statistiche del primo cluster.
+     * @param s2 le statistiche del secondo cluster, calcolate sullo stesso dataset.
+     */
+    private ClusterStatistics(ClusterStatistics s1, ClusterStatistics s2) {
+        this.data = s1.data;
+        this.size = s1.size + s2.size;
+        this.sum = new double[s1.sum.length];
+        for (int a = 0; a < sum.length; a++) {
+            sum[a] = s1.sum[a] + s2.sum[a];
+        }
+        this.squaredNorm = s1.squaredNorm + s2.squaredNorm;
+    }
+
+    /**
+     * Restituisce le statistiche dell'unione di questo cluster con un altro, disgiunto
+     * da questo e riassunto sullo stesso dataset.
+     *
+     * @param other le statistiche dell'altro cluster.
+     * @return le statistiche dell'unione dei due cluster.
+     */
+    ClusterStatistics combine(ClusterStatistics other) {
+        return new ClusterStatistics(this, other);
+    }
+
+    /**
+     * Restituisce il dataset su cui sono state calcolate le statistiche.
+     *
+     * @return il dataset.
+     */
+    Data getData() {
+        return data;
+    }
+
+    /**
+     * Indica se le statistiche sono state calcolate sul dataset specificato.
+     *
+     * @param data il dataset.
+     * @return true se le statistiche riassumono esempi di data.
+     */
+    boolean isOf(Data data) {
+        return this.data == data;
+    }
+
+    /**
+     * Restituisce il peso totale degli esempi del cluster.
+     *
+     * @return il peso totale, pari al numero di esempi se non sono pesati.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Restituisce la somma pesata dei valori di un attributo sugli esempi del cluster.
+     *
+     * @param attribute l'indice dell'attributo.
+     * @return la somma pesata dei valori dell'attributo.
+     */
+    public double getSum(int attribute) {
+        return sum[attribute];
+    }
+
+    /**
+     * Restituisce il numero di attributi degli esempi.
+     *
+     * @return il numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return sum.length;
+    }
+
+    /**
+     * Restituisce la somma pesata delle norme al quadrato degli esempi del cluster.
+     *
+     * @return la somma pesata delle norme al quadrato.
+     */
+    public double getSquaredNorm() {
+        return squaredNorm;
+    }
+
+    /**
+     * Restituisce la somma pesata dei quadrati delle distanze degli esempi dal centroide
+     * del cluster, pari alla somma delle norme al quadrato meno la norma al quadrato
+     * della somma divisa per il peso totale.
+     *
+     * @return la somma dei quadrati delle distanze dal centroide, 0 per un cluster vuoto.
+     */
+    public double getSumOfSquares() {
+        if (size == 0) {
+            return 0;
+        }
+        double sumNorm = 0;
+        for (double s : sum) {
+            sumNorm += s * s;
+        }
+        // l'arrotondamento può rendere la differenza appena negativa
+        return Math.max(0, squaredNorm - sumNorm / size);
+    }
+}
\ No newline at end of file
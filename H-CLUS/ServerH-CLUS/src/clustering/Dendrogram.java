@@ -2,43 +2,304 @@ package clustering;
 
 import data.Data;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * La classe Dendrogram rappresenta un dendrogramma utilizzato per la modellazione gerarchica dei cluster.
+ * Il dendrogramma memorizza solo la sequenza delle fusioni, come una matrice di linkage:
+ * la riga k descrive la fusione che porta dal livello k al livello k+1 con i due cluster
+ * fusi, la distanza di fusione e la dimensione del cluster ottenuto, pari al peso
+ * totale dei suoi esempi.
+ * I cluster del livello base hanno identificativi da 0 a n-1, pari all'indice del loro
+ * esempio; il cluster creato dalla riga k ha identificativo n+k.
+ * Il ClusterSet di un qualsiasi livello viene ricostruito su richiesta.
  * Implementa l'interfaccia Serializable.
  */
 public class Dendrogram implements Serializable {
 
-    private static final long serialVersionUID = 1L;
-    private  ClusterSet tree[]; // Modella il dendrogramma
+    private static final long serialVersionUID = 2L;
+    private int depth; // numero di livelli del dendrogramma
+    private int numberOfExamples; // numero di esempi del livello base
+    private int[] clusterA = new int[0]; // identificativo del primo cluster fuso
+    private int[] clusterB = new int[0]; // identificativo del secondo cluster fuso
+    private double[] height = new double[0]; // distanza di fusione
+    private int[] size = new int[0]; // dimensione del cluster ottenuto dalla fusione
+    private int numberOfMerges = 0; // numero di righe memorizzate
+
+    // identificativo e dimensione del cluster che occupa ogni slot, usati durante la costruzione
+    private transient int[] idOfSlot;
+    private transient int[] sizeOfSlot;
 
     /**
-     * Costruttore che crea un vettore di dimensione depth con cui inizializza tree.
+     * Costruttore che crea un dendrogramma con depth livelli.
      *
      * @param depth la profondità del dendrogramma, ossia il numero di livelli.
      */
     Dendrogram(int depth) {
-        this.tree = new ClusterSet[depth];
+        this.depth = depth;
     }
 
     /**
-     * Memorizza un ClusterSet nella posizione level di tree.
+     * Prepara il dendrogramma a ricevere le fusioni di un insieme di esempi,
+     * cancellando quelle memorizzate in precedenza.
      *
-     * @param c il ClusterSet da memorizzare.
-     * @param level il livello del dendrogramma in cui memorizzare il ClusterSet.
+     * @param data i dati contenenti gli esempi del livello base.
      */
-    void setClusterSet(ClusterSet c, int level) {
-        this.tree[level] = c;
+    void init(Data data) {
+        int numberOfExamples = data.getNumberOfExamples();
+        this.numberOfExamples = numberOfExamples;
+        int capacity = Math.max(0, Math.min(depth, numberOfExamples) - 1);
+        clusterA = new int[capacity];
+        clusterB = new int[capacity];
+        height = new double[capacity];
+        size = new int[capacity];
+        numberOfMerges = 0;
+
+        idOfSlot = new int[numberOfExamples];
+        sizeOfSlot = new int[numberOfExamples];
+        for (int i = 0; i < numberOfExamples; i++) {
+            idOfSlot[i] = i;
+            sizeOfSlot[i] = data.getWeight(i);
+        }
     }
 
     /**
-     * Restituisce il ClusterSet memorizzato nella posizione level di tree.
+     * Aggiunge la fusione che porta al livello successivo. I cluster sono indicati dal
+     * loro slot, cioè dall'indice minimo tra i loro esempi; il cluster fuso occupa lo
+     * slot minore.
+     *
+     * @param slotA lo slot del primo cluster fuso.
+     * @param slotB lo slot del secondo cluster fuso.
+     * @param h     la distanza di fusione.
+     */
+    void addMerge(int slotA, int slotB, double h) {
+        int a = Math.min(slotA, slotB);
+        int b = Math.max(slotA, slotB);
+        clusterA[numberOfMerges] = idOfSlot[a];
+        clusterB[numberOfMerges] = idOfSlot[b];
+        height[numberOfMerges] = h;
+        size[numberOfMerges] = sizeOfSlot[a] + sizeOfSlot[b];
+
+        idOfSlot[a] = numberOfExamples + numberOfMerges;
+        sizeOfSlot[a] = size[numberOfMerges];
+        numberOfMerges++;
+    }
+
+    /**
+     * Restituisce il ClusterSet del livello specificato, ricostruito applicando le
+     * prime level fusioni al livello base. I cluster sono ordinati per indice minimo
+     * dei loro esempi, come nei ClusterSet prodotti dalle fusioni successive.
      *
      * @param level il livello del dendrogramma da cui restituire il ClusterSet.
-     * @return il ClusterSet al livello specificato.
+     * @return il ClusterSet al livello specificato, oppure null se il livello non è stato calcolato.
      */
     ClusterSet getClusterSet(int level) {
-        return this.tree[level];
+        if (numberOfExamples == 0 || level < 0 || level >= depth || level > numberOfMerges) {
+            return null;
+        }
+
+        int n = numberOfExamples;
+        int[] labels = getLabels(level);
+        int clusters = n - level;
+
+        // Riempie i cluster scorrendo gli esempi in ordine crescente.
+        int[] clusterSize = new int[clusters];
+        for (int i = 0; i < n; i++) {
+            clusterSize[labels[i]]++;
+        }
+        int[][] members = new int[clusters][];
+        int[] filled = new int[clusters];
+        for (int c = 0; c < clusters; c++) {
+            members[c] = new int[clusterSize[c]];
+        }
+        for (int i = 0; i < n; i++) {
+            int c = labels[i];
+            members[c][filled[c]++] = i;
+        }
+
+        Cluster[] levelClusters = new Cluster[clusters];
+        for (int c = 0; c < clusters; c++) {
+            levelClusters[c] = new Cluster(members[c]);
+        }
+        return new ClusterSet(levelClusters);
+    }
+
+    /**
+     * Restituisce, per ogni esempio, l'indice del cluster a cui appartiene dopo le prime
+     * merges fusioni. I cluster sono numerati da 0 in ordine di indice minimo dei loro
+     * esempi, come nei ClusterSet dei livelli.
+     *
+     * @param merges il numero di fusioni da applicare, al più il numero di fusioni memorizzate.
+     * @return l'etichetta del cluster di ogni esempio.
+     */
+    int[] getLabels(int merges) {
+        // Unione delle prime fusioni: il padre del cluster fuso in riga k è n+k.
+        int n = numberOfExamples;
+        int[] parent = new int[n + merges];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int k = 0; k < merges; k++) {
+            parent[clusterA[k]] = n + k;
+            parent[clusterB[k]] = n + k;
+        }
+
+        // Assegna le radici ai cluster in ordine di primo esempio.
+        int[] labels = new int[n];
+        int[] clusterOfRoot = new int[n + merges];
+        Arrays.fill(clusterOfRoot, -1);
+        int clusters = 0;
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (clusterOfRoot[root] < 0) {
+                clusterOfRoot[root] = clusters++;
+            }
+            labels[i] = clusterOfRoot[root];
+        }
+        return labels;
+    }
+
+    /**
+     * Conta le fusioni avvenute a una distanza minore o uguale a quella specificata, con
+     * una ricerca binaria sulle distanze di fusione, che non decrescono da una riga alla
+     * successiva per le distanze single-link, average-link, complete-link e Ward.
+     *
+     * @param h la distanza a cui tagliare il dendrogramma.
+     * @return il numero di fusioni con distanza minore o uguale a h.
+     */
+    int countMergesUpTo(double h) {
+        int low = 0;
+        int high = numberOfMerges;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (height[mid] <= h) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Restituisce la radice dell'albero che contiene il nodo specificato, comprimendo
+     * il cammino percorso.
+     *
+     * @param parent il vettore dei padri.
+     * @param i      il nodo di cui cercare la radice.
+     * @return la radice dell'albero.
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Conta i livelli del dendrogramma in cui l'insieme dei cluster differisce da quello
+     * dello stesso livello di un dendrogramma di riferimento costruito sugli stessi
+     * esempi. I livelli calcolati solo in uno dei due dendrogrammi contano come diversi.
+     *
+     * @param reference il dendrogramma di riferimento.
+     * @return il numero di livelli diversi.
+     * @throws IllegalArgumentException se i due dendrogrammi hanno un numero di esempi diverso.
+     */
+    int countDifferentLevels(Dendrogram reference) {
+        if (numberOfExamples != reference.numberOfExamples) {
+            throw new IllegalArgumentException("I dendrogrammi sono costruiti su insiemi di esempi diversi.");
+        }
+
+        // Ogni esempio è etichettato con l'indice minimo del suo cluster: due livelli
+        // coincidono se tutti gli esempi hanno la stessa etichetta in entrambi.
+        int n = numberOfExamples;
+        int[] labels = new int[n];
+        int[] referenceLabels = new int[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = i;
+            referenceLabels[i] = i;
+        }
+        Members members = new Members(this);
+        Members referenceMembers = new Members(reference);
+
+        int common = Math.min(numberOfMerges, reference.numberOfMerges);
+        int different = Math.abs(numberOfMerges - reference.numberOfMerges);
+        int mismatches = 0; // esempi con etichette diverse al livello corrente
+        for (int k = 0; k < common; k++) {
+            mismatches = members.merge(k, labels, referenceLabels, mismatches);
+            mismatches = referenceMembers.merge(k, referenceLabels, labels, mismatches);
+            if (mismatches > 0) {
+                different++;
+            }
+        }
+        return different;
+    }
+
+    /**
+     * La classe Members mantiene, durante la scansione delle fusioni di un dendrogramma,
+     * la lista degli esempi di ogni cluster e il suo indice minimo.
+     */
+    private static class Members {
+
+        private final Dendrogram dendrogram;
+        private final int[] next; // esempio successivo nella lista del cluster, -1 alla fine
+        private final int[] head; // primo esempio della lista di ogni cluster
+        private final int[] tail; // ultimo esempio della lista di ogni cluster
+        private final int[] min; // indice minimo di ogni cluster
+
+        /**
+         * Costruttore che crea i cluster del livello base.
+         *
+         * @param dendrogram il dendrogramma da scandire.
+         */
+        Members(Dendrogram dendrogram) {
+            int n = dendrogram.numberOfExamples;
+            int nodes = n + dendrogram.numberOfMerges;
+            this.dendrogram = dendrogram;
+            this.next = new int[n];
+            this.head = new int[nodes];
+            this.tail = new int[nodes];
+            this.min = new int[nodes];
+            for (int i = 0; i < n; i++) {
+                next[i] = -1;
+                head[i] = i;
+                tail[i] = i;
+                min[i] = i;
+            }
+        }
+
+        /**
+         * Applica la fusione della riga k, rietichettando gli esempi del cluster con
+         * l'indice minimo maggiore, e aggiorna il numero di esempi con etichette diverse.
+         *
+         * @param k           la riga della matrice di linkage.
+         * @param labels      le etichette degli esempi in questo dendrogramma.
+         * @param otherLabels le etichette degli esempi nell'altro dendrogramma.
+         * @param mismatches  il numero di esempi con etichette diverse prima della fusione.
+         * @return il numero di esempi con etichette diverse dopo la fusione.
+         */
+        int merge(int k, int[] labels, int[] otherLabels, int mismatches) {
+            int a = dendrogram.clusterA[k];
+            int b = dendrogram.clusterB[k];
+            int node = dendrogram.numberOfExamples + k;
+            int relabeled = min[a] < min[b] ? b : a;
+            int label = Math.min(min[a], min[b]);
+            for (int x = head[relabeled]; x >= 0; x = next[x]) {
+                if (labels[x] != otherLabels[x]) {
+                    mismatches--;
+                }
+                labels[x] = label;
+                if (labels[x] != otherLabels[x]) {
+                    mismatches++;
+                }
+            }
+            next[tail[a]] = head[b];
+            head[node] = head[a];
+            tail[node] = tail[b];
+            min[node] = label;
+            return mismatches;
+        }
     }
 
     /**
@@ -47,7 +308,55 @@ public class Dendrogram implements Serializable {
      * @return la profondità del dendrogramma.
      */
     int getDepth() {
-        return this.tree.length;
+        return this.depth;
+    }
+
+    /**
+     * Restituisce il numero di esempi del livello base.
+     *
+     * @return il numero di esempi.
+     */
+    int getNumberOfExamples() {
+        return numberOfExamples;
+    }
+
+    /**
+     * Restituisce il numero di fusioni memorizzate.
+     *
+     * @return il numero di righe della matrice di linkage.
+     */
+    int getNumberOfMerges() {
+        return numberOfMerges;
+    }
+
+    /**
+     * Indica se il dendrogramma ha meno fusioni di quante ne servono per riempire
+     * tutti i livelli, perché il clustering si è fermato prima.
+     *
+     * @return true se alcuni livelli non sono stati calcolati.
+     */
+    boolean isStoppedEarly() {
+        return numberOfMerges < clusterA.length;
+    }
+
+    /**
+     * Restituisce il numero di livelli da stampare: se il clustering si è fermato prima,
+     * solo i livelli calcolati.
+     *
+     * @return il numero di livelli da stampare.
+     */
+    private int printedLevels() {
+        return isStoppedEarly() ? numberOfMerges + 1 : depth;
+    }
+
+    /**
+     * Restituisce la distanza della fusione specificata.
+     *
+     * @param k la riga della matrice di linkage.
+     * @return la distanza di fusione.
+     */
+    double getHeight(int k) {
+        return height[k];
     }
 
     /**
@@ -56,15 +365,17 @@ public class Dendrogram implements Serializable {
      * @return una stringa che rappresenta il dendrogramma.
      */
     public String toString() {
-        String v = "";
-        for (int i = 0; i < tree.length; i++) {
-            if (tree[i] != null) {
-                v += ("level" + i + ":\n" + tree[i] + "\n");
+        StringBuilder v = new StringBuilder();
+        int levels = printedLevels();
+        for (int i = 0; i < levels; i++) {
+            ClusterSet level = getClusterSet(i);
+            if (level != null) {
+                v.append("level").append(i).append(":\n").append(level).append("\n");
             } else {
-                v += ("level" + i + ": null\n");
+                v.append("level").append(i).append(": null\n");
             }
         }
-        return v;
+        return v.toString();
     }
 
     /**
@@ -74,14 +385,16 @@ public class Dendrogram implements Serializable {
      * @return una stringa che rappresenta il dendrogramma con i dettagli dei campioni.
      */
     String toString(Data data) {
-        String v = "";
-        for (int i = 0; i < tree.length; i++) {
-            if (tree[i] != null) {
-                v += ("level" + i + ":\n" + tree[i].toString(data) + "\n");
+        StringBuilder v = new StringBuilder();
+        int levels = printedLevels();
+        for (int i = 0; i < levels; i++) {
+            ClusterSet level = getClusterSet(i);
+            if (level != null) {
+                v.append("level").append(i).append(":\n").append(level.toString(data)).append("\n");
             } else {
-                v += ("level" + i + ": null\n");
+                v.append("level").append(i).append(": null\n");
             }
         }
-        return v;
+        return v.toString();
     }
 }
\ No newline at end of file
@@ -1,7 +1,12 @@
 package clustering;
 
 import data.Data;
+import data.DistanceMatrix;
+import data.KdTree;
+import data.MappedDistanceMatrix;
 import distance.ClusterDistance;
+import distance.LanceWilliamsDistance;
+import distance.SingleLinkDistance;
 
 import java.io.Serializable;
 import java.io.FileNotFoundException;
@@ -10,6 +15,15 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * La classe HierachicalClusterMiner esegue il clustering gerarchico e gestisce un dendrogramma.
@@ -18,6 +32,18 @@ import java.io.FileOutputStream;
 public class HierachicalClusterMiner implements Serializable {
 
     private Dendrogram dendrogram;
+    private MiningStrategy strategy = MiningStrategy.LANCE_WILLIAMS; // strategia di costruzione del dendrogramma
+    private int parallelism = 1; // numero di thread per la ricerca della coppia più vicina
+    private double maxMergeHeight = Double.POSITIVE_INFINITY; // distanza massima di una fusione
+    private int targetClusters = 1; // numero di cluster a cui fermare le fusioni
+    private long timeBudgetMillis = 0; // tempo massimo di mine() in millisecondi, 0 senza limite
+    private transient ProgressListener progressListener; // destinatario dell'avanzamento di mine()
+    private transient CancellationToken cancellationToken; // richiesta di annullamento di mine()
+    private transient Data minedData; // dati dell'ultimo clustering, per l'inserimento di nuovi esempi
+    private transient ClusterDistance minedDistance; // distanza dell'ultimo clustering
+    private transient MergeSequence spanningTree; // albero ricoprente minimo dell'ultimo clustering single-link
+    private transient long distanceMemory; // byte occupati dalle matrici delle distanze dell'ultimo clustering
+    private transient long reservedMemory; // byte dello heap riservati alle matrici dei miner eseguiti insieme
     /**
      * Costruttore che inizializza un HierachicalClusterMiner con una profondità specificata.
      *
@@ -30,6 +56,181 @@ public class HierachicalClusterMiner implements Serializable {
         }
         dendrogram = new Dendrogram(depth);
     }
+
+    /**
+     * Costruttore che inizializza un HierachicalClusterMiner con una profondità e una
+     * strategia di costruzione specificate.
+     *
+     * @param depth    la profondità del dendrogramma.
+     * @param strategy la strategia con cui costruire il dendrogramma.
+     * @throws InvalidDepthException se la profondità è minore o uguale a zero.
+     */
+    public HierachicalClusterMiner(int depth, MiningStrategy strategy) throws InvalidDepthException {
+        this(depth);
+        setStrategy(strategy);
+    }
+
+    /**
+     * Restituisce la strategia con cui viene costruito il dendrogramma.
+     *
+     * @return la strategia di costruzione.
+     */
+    public MiningStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Imposta la strategia con cui viene costruito il dendrogramma.
+     * Le strategie diverse da {@link MiningStrategy#NAIVE} richiedono una distanza che
+     * implementi {@link LanceWilliamsDistance}, e {@link MiningStrategy#SINGLE_LINK_MST} e
+     * {@link MiningStrategy#SINGLE_LINK_BORUVKA} richiedono {@link SingleLinkDistance};
+     * con le altre distanze si usa
+     * {@link MiningStrategy#NAIVE}.
+     *
+     * @param strategy la strategia di costruzione.
+     */
+    public void setStrategy(MiningStrategy strategy) {
+        this.strategy = strategy;
+    }
+    /**
+     * Restituisce il numero di thread usati per cercare la coppia di cluster più vicina.
+     *
+     * @return il numero di thread.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Imposta il numero di thread usati per cercare la coppia di cluster più vicina
+     * con le strategie {@link MiningStrategy#NAIVE} e {@link MiningStrategy#LANCE_WILLIAMS}.
+     * Il risultato non dipende dal numero di thread.
+     *
+     * @param parallelism il numero di thread, 1 per la ricerca sequenziale.
+     * @throws IllegalArgumentException se il numero di thread è minore di uno.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Il numero di thread deve essere maggiore di zero.");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Restituisce la distanza massima a cui due cluster possono essere fusi.
+     *
+     * @return la distanza massima di fusione.
+     */
+    public double getMaxMergeHeight() {
+        return maxMergeHeight;
+    }
+
+    /**
+     * Imposta la distanza massima a cui due cluster possono essere fusi: il clustering
+     * si ferma quando la coppia di cluster più vicini supera questa distanza.
+     *
+     * @param maxMergeHeight la distanza massima di fusione, {@link Double#POSITIVE_INFINITY}
+     *                       per nessun limite.
+     * @throws IllegalArgumentException se la distanza è negativa o non è un numero.
+     */
+    public void setMaxMergeHeight(double maxMergeHeight) {
+        if (!(maxMergeHeight >= 0)) {
+            throw new IllegalArgumentException("La distanza massima di fusione non può essere negativa.");
+        }
+        this.maxMergeHeight = maxMergeHeight;
+    }
+
+    /**
+     * Restituisce il numero di cluster a cui il clustering si ferma.
+     *
+     * @return il numero di cluster richiesto.
+     */
+    public int getTargetClusters() {
+        return targetClusters;
+    }
+
+    /**
+     * Imposta il numero di cluster a cui il clustering si ferma, anche se il
+     * dendrogramma ha livelli ancora da calcolare.
+     *
+     * @param targetClusters il numero di cluster, 1 per nessun limite.
+     * @throws IllegalArgumentException se il numero di cluster è minore di uno.
+     */
+    public void setTargetClusters(int targetClusters) {
+        if (targetClusters < 1) {
+            throw new IllegalArgumentException("Il numero di cluster deve essere maggiore di zero.");
+        }
+        this.targetClusters = targetClusters;
+    }
+
+    /**
+     * Restituisce il tempo massimo di esecuzione di {@link #mine(Data, ClusterDistance)}.
+     *
+     * @return il tempo massimo in millisecondi, 0 se non c'è limite.
+     */
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    /**
+     * Imposta il tempo massimo di esecuzione di {@link #mine(Data, ClusterDistance)}.
+     * Allo scadere il dendrogramma contiene i livelli completati fino a quel momento.
+     * Le strategie {@link MiningStrategy#NN_CHAIN}, {@link MiningStrategy#SINGLE_LINK_MST} e
+     * {@link MiningStrategy#SINGLE_LINK_BORUVKA} trovano le fusioni in ordine sparso, quindi se il tempo scade prima della fine
+     * resta solo il livello base.
+     *
+     * @param timeBudgetMillis il tempo massimo in millisecondi, 0 per nessun limite.
+     * @throws IllegalArgumentException se il tempo è negativo.
+     */
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        if (timeBudgetMillis < 0) {
+            throw new IllegalArgumentException("Il tempo massimo non può essere negativo.");
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Imposta l'oggetto a cui notificare l'avanzamento di {@link #mine(Data, ClusterDistance)}.
+     * Non viene salvato insieme al miner.
+     *
+     * @param progressListener il destinatario dell'avanzamento, oppure null.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imposta il token con cui un altro thread può annullare
+     * {@link #mine(Data, ClusterDistance)}: il clustering si ferma appena possibile e il
+     * dendrogramma contiene i livelli completati fino a quel momento, come allo scadere
+     * del tempo massimo. Non viene salvato insieme al miner.
+     *
+     * @param cancellationToken il token di annullamento, oppure null.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Restituisce il numero di livelli calcolati dall'ultima esecuzione di
+     * {@link #mine(Data, ClusterDistance)}, compreso il livello base.
+     *
+     * @return il numero di livelli calcolati.
+     */
+    public int getNumberOfLevels() {
+        return Math.min(dendrogram.getDepth(), dendrogram.getNumberOfMerges() + 1);
+    }
+
+    /**
+     * Indica se l'ultima esecuzione di {@link #mine(Data, ClusterDistance)} si è fermata
+     * prima di calcolare tutti i livelli del dendrogramma.
+     *
+     * @return true se alcuni livelli non sono stati calcolati.
+     */
+    public boolean isStoppedEarly() {
+        return dendrogram.isStoppedEarly();
+    }
+
     /**
      * Restituisce una rappresentazione in stringa del dendrogramma.
      *
@@ -55,6 +256,12 @@ public class HierachicalClusterMiner implements Serializable {
      * Esegue il clustering gerarchico sui dati forniti.
      * Crea il livello base del dendrogramma con ogni esempio in un cluster separato,
      * e per ogni livello successivo fonde i due cluster più vicini.
+     * Se la distanza implementa {@link LanceWilliamsDistance}, le distanze tra cluster
+     * sono aggiornate in modo incrementale secondo la strategia impostata, invece di
+     * essere ricalcolate a ogni livello.
+     * Le fusioni si fermano prima dell'ultimo livello se si supera la distanza massima
+     * di fusione, se si raggiunge il numero di cluster richiesto, se scade il tempo
+     * massimo o se il clustering viene annullato con il {@link CancellationToken}.
      *
      * @param data l'oggetto Data contenente i dati da clusterizzare.
      * @param distance l'oggetto ClusterDistance utilizzato per calcolare la distanza tra i cluster.
@@ -62,6 +269,12 @@ public class HierachicalClusterMiner implements Serializable {
      */
     public void mine(Data data, ClusterDistance distance) throws InvalidSizeException{
         int numExamples = data.getNumberOfExamples();
+        minedData = data;
+        minedDistance = distance;
+        spanningTree = null;
+        distanceMemory = 0;
+        MiningLimits limits = new MiningLimits(maxMergeHeight, targetClusters, timeBudgetMillis, numExamples,
+                cancellationToken);
         ClusterSet clusterSet = new ClusterSet(numExamples);
 
         // Inizializza il livello base del dendrogramma
@@ -71,18 +284,355 @@ public class HierachicalClusterMiner implements Serializable {
             clusterSet.add(cluster);
         }
 
-        dendrogram.setClusterSet(clusterSet, 0);
+        dendrogram.init(data);
+
+        // Le strategie NN_CHAIN, SINGLE_LINK_MST e SINGLE_LINK_BORUVKA trovano sempre tutte le n-1 fusioni.
+        int totalMerges = Math.min(dendrogram.getDepth(), numExamples) - 1;
+        if (strategy == MiningStrategy.NN_CHAIN || strategy == MiningStrategy.SINGLE_LINK_MST
+                || strategy == MiningStrategy.SINGLE_LINK_BORUVKA) {
+            totalMerges = numExamples - 1;
+        }
+        totalMerges = Math.max(totalMerges, 0);
+        ProgressTracker progress = new ProgressTracker(progressListener, totalMerges);
+
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            mine(data, distance, clusterSet, pool, limits, progress);
+            // Se il clustering non è stato interrotto il lavoro previsto è terminato,
+            // anche quando si è fermato per la distanza o il numero di cluster.
+            progress.finish(limits.mustStop() ? dendrogram.getNumberOfMerges() : totalMerges);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Aggiorna il dendrogramma dell'ultimo clustering dopo l'aggiunta di nuovi esempi in
+     * coda ai dati, ad esempio con {@link Data#withNewRows()}, usando la stessa misura
+     * di distanza.
+     * Con {@link SingleLinkDistance} il dendrogramma deriva dall'albero ricoprente minimo,
+     * che viene aggiornato esempio per esempio in tempo O(n) ciascuno, seguito da un solo
+     * ordinamento degli archi in tempo O(n log n): solo il primo aggiornamento dopo un
+     * clustering con una strategia diversa da {@link MiningStrategy#SINGLE_LINK_MST} e
+     * {@link MiningStrategy#SINGLE_LINK_BORUVKA} deve costruire l'albero. Con le altre
+     * distanze una fusione già avvenuta può cambiare dopo l'inserimento, quindi il
+     * clustering viene ripetuto su tutti i dati e il metodo restituisce false.
+     *
+     * @param data i dati dell'ultimo clustering seguiti dai nuovi esempi.
+     * @return true se il dendrogramma è stato aggiornato in modo incrementale, false se il
+     *         clustering è stato ripetuto su tutti i dati.
+     * @throws InvalidSizeException     se il numero di esempi nei dati è inferiore a due.
+     * @throws IllegalStateException    se il miner non ha eseguito un clustering, ad esempio
+     *                                  perché è stato caricato da file.
+     * @throws IllegalArgumentException se i dati non iniziano con gli esempi dell'ultimo clustering.
+     */
+    public boolean insertExamples(Data data) throws InvalidSizeException {
+        if (minedData == null) {
+            throw new IllegalStateException("Non c'è un clustering da aggiornare.");
+        }
+        if (!data.isExtensionOf(minedData)) {
+            throw new IllegalArgumentException("I dati non contengono gli esempi dell'ultimo clustering.");
+        }
+        if (!(minedDistance instanceof SingleLinkDistance)) {
+            mine(data, minedDistance);
+            return false;
+        }
+
+        int numExamples = data.getNumberOfExamples();
+        MiningLimits limits = new MiningLimits(maxMergeHeight, targetClusters, timeBudgetMillis, numExamples,
+                cancellationToken);
+        ProgressTracker progress = new ProgressTracker(progressListener, Math.max(numExamples - 1, 0));
+        MergeSequence tree = spanningTree;
+        if (tree == null) {
+            boolean spatialIndex = minedData.getNumberOfAttributes() <= KdTree.MAX_EFFECTIVE_DIMENSIONS;
+            tree = new MinimumSpanningTreeEngine(minedData, spatialIndex).computeSpanningTree(limits, progress);
+        }
+        if (tree != null) {
+            tree = MinimumSpanningTreeEngine.insert(tree, data, minedData.getNumberOfExamples());
+        }
+
+        minedData = data;
+        spanningTree = tree;
+        dendrogram.init(data);
+        if (tree != null) {
+            MinimumSpanningTreeEngine.toMerges(tree, numExamples).addTo(dendrogram, limits);
+        }
+        progress.finish(limits.mustStop() ? dendrogram.getNumberOfMerges() : Math.max(numExamples - 1, 0));
+        return true;
+    }
+
+    /**
+     * Esegue il clustering degli stessi dati con più misure di distanza, ciascuna con il
+     * proprio miner, in parallelo su thread diversi. La matrice delle distanze tra gli
+     * esempi è memorizzata in {@link Data} e viene calcolata una sola volta per tutti i
+     * miner; ogni miner che aggiorna le distanze con Lance-Williams ne mantiene poi una
+     * propria copia modificabile delle distanze tra cluster.
+     * <p>
+     * Le copie contemporanee devono entrare nello heap insieme alla matrice degli esempi:
+     * i miner con una copia sono eseguiti al più tanti alla volta quante sono le copie che
+     * entrano nella memoria disponibile, vedi {@link MappedDistanceMatrix#heapBudget()}.
+     * Se neppure una copia entra nello heap le copie sono memorizzate su file e i miner
+     * sono eseguiti tutti in parallelo.
+     *
+     * @param data      l'oggetto Data contenente i dati da clusterizzare.
+     * @param miners    i miner da eseguire, già configurati.
+     * @param distances le misure di distanza, una per ogni miner.
+     * @throws InvalidSizeException     se il numero di esempi nei dati è inferiore a due.
+     * @throws IllegalArgumentException se il numero di miner e di distanze è diverso.
+     */
+    public static void mineAll(Data data, HierachicalClusterMiner[] miners, ClusterDistance[] distances)
+            throws InvalidSizeException {
+        if (miners.length != distances.length) {
+            throw new IllegalArgumentException("Serve una misura di distanza per ogni miner.");
+        }
+        if (miners.length == 0) {
+            return;
+        }
+
+        long entries = (long) data.getNumberOfExamples() * (data.getNumberOfExamples() - 1) / 2;
+        int copies = 0;
+        long copyBytes = 0;
+        for (int i = 0; i < miners.length; i++) {
+            if (miners[i].copiesDistanceMatrix(distances[i])) {
+                copies++;
+                copyBytes = Math.max(copyBytes,
+                        entries * ClusterDistanceMatrix.bytesPerEntry((LanceWilliamsDistance) distances[i], data));
+            }
+        }
+
+        // Con più copie la matrice degli esempi è calcolata una volta e copiata da tutte;
+        // una sola copia è calcolata direttamente dagli esempi. Le copie contemporanee
+        // sono limitate dalla memoria lasciata libera dalla matrice degli esempi e ogni
+        // copia tiene conto di quelle degli altri miner.
+        DistanceMatrix source = copies > 1 ? data.getDistanceMatrix() : data.getComputedDistanceMatrix();
+        int concurrentCopies = Math.max(copies, 1);
+        long reserved = 0;
+        if (copies > 0) {
+            long available = MappedDistanceMatrix.heapBudget() - (source != null ? source.memorySize() : 0);
+            long fitting = copyBytes > 0 ? available / copyBytes : copies;
+            if (fitting >= 1) {
+                concurrentCopies = (int) Math.min(copies, fitting);
+                reserved = (concurrentCopies - 1) * copyBytes;
+            }
+        }
+        Semaphore copySlots = new Semaphore(concurrentCopies);
+        long reservedBytes = reserved;
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < miners.length; i++) {
+            HierachicalClusterMiner miner = miners[i];
+            ClusterDistance distance = distances[i];
+            if (!miner.copiesDistanceMatrix(distance)) {
+                tasks.add(() -> {
+                    miner.mine(data, distance);
+                    return null;
+                });
+                continue;
+            }
+            tasks.add(() -> {
+                copySlots.acquire();
+                try {
+                    miner.reservedMemory = reservedBytes;
+                    miner.mine(data, distance);
+                } finally {
+                    miner.reservedMemory = 0;
+                    copySlots.release();
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(miners.length, Runtime.getRuntime().availableProcessors()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Clustering interrotto", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidSizeException) {
+                throw (InvalidSizeException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Errore durante il clustering", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Riempie i livelli del dendrogramma con la strategia impostata.
+     *
+     * @param data       l'oggetto Data contenente i dati da clusterizzare.
+     * @param distance   l'oggetto ClusterDistance utilizzato per calcolare la distanza tra i cluster.
+     * @param clusterSet il ClusterSet del livello base.
+     * @param pool       il pool di thread per la ricerca della coppia più vicina, oppure null.
+     * @param limits     i criteri di arresto.
+     * @param progress   l'oggetto a cui notificare l'avanzamento.
+     */
+    private void mine(Data data, ClusterDistance distance, ClusterSet clusterSet, ForkJoinPool pool,
+                      MiningLimits limits, ProgressTracker progress) {
+        int numExamples = data.getNumberOfExamples();
+
+        // Se la distanza ammette l'aggiornamento di Lance-Williams, evita di ricalcolare
+        // a ogni livello le distanze tra tutte le coppie di cluster.
+        if (distance instanceof LanceWilliamsDistance && strategy == MiningStrategy.LANCE_WILLIAMS) {
+            LanceWilliamsDistance lwDistance = (LanceWilliamsDistance) distance;
+            LanceWilliamsEngine engine = new LanceWilliamsEngine(distanceMatrix(data, lwDistance), numExamples);
+            for (int level = 1; level < dendrogram.getDepth(); level++) {
+                if (limits.reachedTarget(level - 1) || limits.mustStop()
+                        || !engine.mergeClosestClusters(lwDistance, dendrogram, pool, limits)) {
+                    return;
+                }
+                progress.update(level);
+            }
+            return;
+        }
+
+        // Il single-link deriva dall'albero ricoprente minimo, senza matrice delle distanze.
+        if (distance instanceof SingleLinkDistance
+                && (strategy == MiningStrategy.SINGLE_LINK_MST || strategy == MiningStrategy.SINGLE_LINK_BORUVKA)) {
+            spanningTree = new MinimumSpanningTreeEngine(data, strategy == MiningStrategy.SINGLE_LINK_BORUVKA)
+                    .computeSpanningTree(limits, progress);
+            if (spanningTree != null) {
+                MinimumSpanningTreeEngine.toMerges(spanningTree, numExamples).addTo(dendrogram, limits);
+            }
+            return;
+        }
+
+        if (distance instanceof LanceWilliamsDistance && strategy == MiningStrategy.NN_CHAIN) {
+            LanceWilliamsDistance lwDistance = (LanceWilliamsDistance) distance;
+            NearestNeighborChainEngine engine = new NearestNeighborChainEngine(distanceMatrix(data, lwDistance),
+                    numExamples, lwDistance);
+            MergeSequence merges = engine.computeMerges(limits, progress);
+            if (merges != null) {
+                merges.addTo(dendrogram, limits);
+            }
+            return;
+        }
 
         // Esegue il clustering per ciascun livello successivo
         for (int level = 1; level < dendrogram.getDepth(); level++) {
-            ClusterSet previousLevelClusterSet = dendrogram.getClusterSet(level - 1);
-            if (previousLevelClusterSet != null) {
-                ClusterSet newClusterSet = previousLevelClusterSet.mergeClosestClusters(distance, data);
-                dendrogram.setClusterSet(newClusterSet, level);
+            if (limits.reachedTarget(level - 1) || limits.mustStop()) {
+                return;
+            }
+            clusterSet = clusterSet.mergeClosestClusters(distance, data, dendrogram, pool, limits);
+            if (clusterSet == null) {
+                return;
             }
+            progress.update(level);
         }
     }
 
+    /**
+     * Indica se il clustering con la distanza specificata costruisce una propria matrice
+     * delle distanze tra cluster, cioè se usa le strategie
+     * {@link MiningStrategy#LANCE_WILLIAMS} o {@link MiningStrategy#NN_CHAIN} con una
+     * {@link LanceWilliamsDistance}.
+     *
+     * @param distance la misura di distanza tra cluster.
+     * @return true se il clustering alloca una matrice delle distanze tra cluster.
+     */
+    boolean copiesDistanceMatrix(ClusterDistance distance) {
+        return distance instanceof LanceWilliamsDistance
+                && (strategy == MiningStrategy.LANCE_WILLIAMS || strategy == MiningStrategy.NN_CHAIN);
+    }
+
+    /**
+     * Crea la matrice delle distanze tra i cluster del livello base e ne registra la
+     * memoria, insieme a quella della matrice delle distanze tra gli esempi da cui è
+     * copiata, se era già stata calcolata.
+     *
+     * @param data     i dati da clusterizzare.
+     * @param distance la misura di distanza tra cluster.
+     * @return la matrice delle distanze tra i cluster del livello base.
+     */
+    private ClusterDistanceMatrix distanceMatrix(Data data, LanceWilliamsDistance distance) {
+        ClusterDistanceMatrix matrix = new ClusterDistanceMatrix(data.getNumberOfExamples(), distance, data,
+                reservedMemory);
+        DistanceMatrix source = data.getComputedDistanceMatrix();
+        distanceMemory = (source != null ? source.memorySize() : 0) + matrix.memorySize();
+        return matrix;
+    }
+
+    /**
+     * Restituisce la memoria occupata nello heap dalle matrici delle distanze usate
+     * dall'ultimo clustering con le strategie {@link MiningStrategy#LANCE_WILLIAMS} e
+     * {@link MiningStrategy#NN_CHAIN}: la matrice delle distanze tra i cluster e, se era
+     * già stata calcolata, quella delle distanze tra gli esempi da cui è copiata, entrambe
+     * con la precisione dei dati.
+     *
+     * @return la memoria occupata in byte, 0 se le matrici non sono state usate.
+     */
+    public long getDistanceMemory() {
+        return distanceMemory;
+    }
+
+    /**
+     * Restituisce le distanze di fusione: l'elemento k è la distanza a cui avviene la
+     * fusione che porta dal livello k al livello k+1.
+     *
+     * @return le distanze di fusione dei livelli calcolati.
+     */
+    public double[] getMergeHeights() {
+        double[] heights = new double[dendrogram.getNumberOfMerges()];
+        for (int k = 0; k < heights.length; k++) {
+            heights[k] = dendrogram.getHeight(k);
+        }
+        return heights;
+    }
+
+    /**
+     * Taglia il dendrogramma alla distanza specificata: restituisce i cluster ottenuti
+     * applicando tutte le fusioni avvenute a una distanza minore o uguale a h.
+     * Il taglio usa una ricerca binaria sulle distanze di fusione memorizzate, quindi
+     * molti tagli diversi possono essere calcolati da un solo clustering.
+     *
+     * @param h la distanza a cui tagliare il dendrogramma.
+     * @return l'indice del cluster di ogni esempio, con i cluster numerati da 0 in ordine
+     * di indice minimo dei loro esempi.
+     */
+    public int[] cutAtHeight(double h) {
+        return dendrogram.getLabels(dendrogram.countMergesUpTo(h));
+    }
+
+    /**
+     * Taglia il dendrogramma al livello con il numero di cluster specificato.
+     *
+     * @param clusters il numero di cluster desiderato.
+     * @return l'indice del cluster di ogni esempio, con i cluster numerati da 0 in ordine
+     * di indice minimo dei loro esempi.
+     * @throws IllegalArgumentException se il livello con quel numero di cluster non è
+     *                                  stato calcolato.
+     */
+    public int[] cutIntoClusters(int clusters) {
+        int n = dendrogram.getNumberOfExamples();
+        int merges = n - clusters;
+        if (clusters < 1 || merges < 0 || merges > dendrogram.getNumberOfMerges()) {
+            throw new IllegalArgumentException("Il livello con " + clusters + " cluster non è stato calcolato.");
+        }
+        return dendrogram.getLabels(merges);
+    }
+
+    /**
+     * Conta i livelli del dendrogramma in cui i cluster differiscono da quelli di un
+     * dendrogramma di riferimento costruito sugli stessi dati, ad esempio con una
+     * matrice delle distanze in precisione double.
+     *
+     * @param reference il miner di riferimento.
+     * @return il numero di livelli con cluster diversi.
+     * @throws IllegalArgumentException se i due dendrogrammi hanno un numero di esempi diverso.
+     */
+    public int countDifferentLevels(HierachicalClusterMiner reference) {
+        return dendrogram.countDifferentLevels(reference.dendrogram);
+    }
+
     /**
      * Carica un'istanza serializzata di HierachicalClusterMiner da un file.
      *
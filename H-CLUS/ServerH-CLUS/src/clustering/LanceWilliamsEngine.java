@@ -0,0 +1,71 @@
+package clustering;
+
+import distance.LanceWilliamsDistance;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * La classe LanceWilliamsEngine costruisce i livelli del dendrogramma mantenendo
+ * una matrice delle distanze tra cluster, aggiornata dopo ogni fusione con la
+ * formula di Lance-Williams. Le distanze tra gli esempi vengono calcolate una sola
+ * volta; a ogni livello si aggiornano soltanto le distanze dal cluster fuso.
+ * Le fusioni prodotte coincidono con quelle di {@link ClusterSet#mergeClosestClusters}.
+ */
+class LanceWilliamsEngine {
+
+    private final ClusterDistanceMatrix matrix; // distanze tra i cluster attivi
+    private final int[] slots; // slot dei cluster attivi, nello stesso ordine del ClusterSet
+    private int activeClusters;
+
+    /**
+     * Costruttore che parte dalla matrice delle distanze tra i cluster del livello base.
+     *
+     * @param matrix la matrice delle distanze tra i cluster del livello base.
+     * @param n      il numero di cluster del livello base.
+     */
+    LanceWilliamsEngine(ClusterDistanceMatrix matrix, int n) {
+        this.matrix = matrix;
+        this.slots = new int[n];
+        this.activeClusters = n;
+        for (int i = 0; i < n; i++) {
+            slots[i] = i;
+        }
+    }
+
+    /**
+     * Fonde i due cluster più vicini, aggiorna la matrice delle distanze e registra la
+     * fusione nel dendrogramma.
+     *
+     * @param distance   la misura di distanza usata per l'aggiornamento.
+     * @param dendrogram il dendrogramma in cui registrare la fusione.
+     * @param pool       il pool di thread su cui suddividere la ricerca della coppia più
+     *                   vicina, oppure null per la ricerca sequenziale.
+     * @param limits     i criteri di arresto.
+     * @return true se la fusione è stata effettuata, false se la distanza tra i due
+     * cluster più vicini supera la distanza massima di fusione o se la ricerca è stata
+     * interrotta.
+     * @throws IllegalStateException se ci sono meno di due cluster nell'insieme.
+     */
+    boolean mergeClosestClusters(LanceWilliamsDistance distance, Dendrogram dendrogram, ForkJoinPool pool,
+                                 MiningLimits limits) {
+        if (activeClusters < 2) {
+            throw new IllegalStateException("Non ci sono abbastanza cluster per effettuare una fusione");
+        }
+
+        // Trova la coppia di cluster più vicini, nello stesso ordine di ClusterSet
+        ClosestPairSearch closest = ClosestPairSearch.find(activeClusters,
+                (p, q) -> matrix.get(slots[p], slots[q]), pool, limits);
+        int mergeIndex1 = closest.getIndex1();
+        int mergeIndex2 = closest.getIndex2();
+        if (closest.isStopped() || limits.exceedsHeight(closest.getMinDistance())) {
+            return false;
+        }
+
+        // Aggiorna le distanze dal cluster fuso e rimuove il secondo slot dai cluster attivi
+        dendrogram.addMerge(slots[mergeIndex1], slots[mergeIndex2], closest.getMinDistance());
+        matrix.merge(slots[mergeIndex1], slots[mergeIndex2], slots, activeClusters, distance);
+        System.arraycopy(slots, mergeIndex2 + 1, slots, mergeIndex2, activeClusters - mergeIndex2 - 1);
+        activeClusters--;
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package clustering;
+
+import java.util.Arrays;
+
+/**
+ * La classe MergeSequence memorizza una sequenza di fusioni tra cluster, ciascuna
+ * descritta dagli slot dei due cluster fusi e dalla distanza di fusione.
+ * Lo slot di un cluster è l'indice minimo tra i suoi esempi: il cluster fuso occupa
+ * lo slot minore dei due.
+ */
+class MergeSequence {
+
+    private final int[] first; // slot del primo cluster fuso (il minore)
+    private final int[] second; // slot del secondo cluster fuso
+    private final double[] height; // distanza di fusione
+    private int count = 0;
+
+    /**
+     * Costruttore che inizializza una sequenza vuota con la capacità specificata.
+     *
+     * @param capacity il numero massimo di fusioni memorizzabili.
+     */
+    MergeSequence(int capacity) {
+        first = new int[capacity];
+        second = new int[capacity];
+        height = new double[capacity];
+    }
+
+    /**
+     * Aggiunge una fusione alla sequenza.
+     *
+     * @param a lo slot di uno dei due cluster.
+     * @param b lo slot dell'altro cluster.
+     * @param h la distanza di fusione.
+     */
+    void add(int a, int b, double h) {
+        first[count] = Math.min(a, b);
+        second[count] = Math.max(a, b);
+        height[count] = h;
+        count++;
+    }
+
+    /**
+     * Restituisce il numero di fusioni memorizzate.
+     *
+     * @return il numero di fusioni.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Restituisce lo slot del primo cluster della fusione specificata.
+     *
+     * @param i la posizione della fusione nella sequenza.
+     * @return lo slot minore tra i due cluster fusi.
+     */
+    int getFirst(int i) {
+        return first[i];
+    }
+
+    /**
+     * Restituisce lo slot del secondo cluster della fusione specificata.
+     *
+     * @param i la posizione della fusione nella sequenza.
+     * @return lo slot maggiore tra i due cluster fusi.
+     */
+    int getSecond(int i) {
+        return second[i];
+    }
+
+    /**
+     * Restituisce la distanza della fusione specificata.
+     *
+     * @param i la posizione della fusione nella sequenza.
+     * @return la distanza di fusione.
+     */
+    double getHeight(int i) {
+        return height[i];
+    }
+
+    /**
+     * Ordina le fusioni per distanza crescente. L'ordinamento è stabile, quindi una
+     * fusione che usa un cluster creato da un'altra fusione con la stessa distanza
+     * resta dopo di essa.
+     */
+    void sortByHeight() {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(height[i], height[j]));
+
+        int[] sortedFirst = new int[count];
+        int[] sortedSecond = new int[count];
+        double[] sortedHeight = new double[count];
+        for (int i = 0; i < count; i++) {
+            sortedFirst[i] = first[order[i]];
+            sortedSecond[i] = second[order[i]];
+            sortedHeight[i] = height[order[i]];
+        }
+        System.arraycopy(sortedFirst, 0, first, 0, count);
+        System.arraycopy(sortedSecond, 0, second, 0, count);
+        System.arraycopy(sortedHeight, 0, height, 0, count);
+    }
+
+    /**
+     * Registra nel dendrogramma, in ordine, le fusioni necessarie a riempirne i livelli,
+     * fermandosi prima se lo richiedono i criteri di arresto. Le fusioni devono essere
+     * ordinate per distanza crescente.
+     *
+     * @param dendrogram il dendrogramma da riempire, già inizializzato.
+     * @param limits     i criteri di arresto.
+     * @throws IllegalStateException se il dendrogramma ha più livelli delle fusioni disponibili.
+     */
+    void addTo(Dendrogram dendrogram, MiningLimits limits) {
+        for (int level = 1; level < dendrogram.getDepth(); level++) {
+            if (limits.reachedTarget(level - 1)) {
+                return;
+            }
+            if (level > count) {
+                throw new IllegalStateException("Non ci sono abbastanza cluster per effettuare una fusione");
+            }
+            if (limits.exceedsHeight(height[level - 1])) {
+                return;
+            }
+            dendrogram.addMerge(first[level - 1], second[level - 1], height[level - 1]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,355 @@
+package clustering;
+
+import data.Data;
+import data.KdTree;
+
+/**
+ * La classe MinimumSpanningTreeEngine calcola le fusioni del clustering single-link
+ * a partire dall'albero ricoprente minimo degli esempi.
+ * L'albero è costruito con l'algoritmo di Prim calcolando le distanze tra gli esempi
+ * al momento, senza memorizzare la matrice delle distanze: servono O(n) memoria
+ * aggiuntiva e tempo O(n^2). In alternativa l'albero è costruito con l'algoritmo di
+ * Borůvka interrogando un {@link KdTree}: con pochi attributi ogni ricerca del vicino
+ * costa circa O(log n) e il tempo complessivo scende a circa O(n log^2 n).
+ * Gli archi dell'albero, ordinati per peso, sono le fusioni del dendrogramma single-link.
+ */
+class MinimumSpanningTreeEngine {
+
+    private final int n; // numero di esempi
+    private final Data data;
+    private final boolean spatialIndex; // true per l'algoritmo di Borůvka sul kd-tree
+
+    /**
+     * Costruttore che inizializza il motore sui dati specificati.
+     *
+     * @param data         i dati contenenti gli esempi.
+     * @param spatialIndex true per costruire l'albero con l'algoritmo di Borůvka su un
+     *                     {@link KdTree}, false per l'algoritmo di Prim.
+     */
+    MinimumSpanningTreeEngine(Data data, boolean spatialIndex) {
+        this.n = data.getNumberOfExamples();
+        this.data = data;
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * Calcola tutte le n-1 fusioni single-link e le restituisce ordinate per distanza
+     * crescente. Gli archi sono trovati in ordine sparso, quindi se il tempo massimo
+     * scade o il clustering viene annullato prima della fine non ci sono livelli
+     * completi da restituire.
+     *
+     * @param limits   i criteri di arresto.
+     * @param progress l'oggetto a cui notificare gli archi trovati.
+     * @return la sequenza delle fusioni, oppure null se il tempo massimo è scaduto o il
+     * clustering è stato annullato.
+     */
+    MergeSequence computeMerges(MiningLimits limits, ProgressTracker progress) {
+        MergeSequence edges = computeSpanningTree(limits, progress);
+        return edges != null ? toMerges(edges, n) : null;
+    }
+
+    /**
+     * Calcola gli archi dell'albero ricoprente minimo ordinati per peso crescente.
+     *
+     * @param limits   i criteri di arresto.
+     * @param progress l'oggetto a cui notificare gli archi trovati.
+     * @return gli archi dell'albero, oppure null se il tempo massimo è scaduto o il
+     * clustering è stato annullato.
+     */
+    MergeSequence computeSpanningTree(MiningLimits limits, ProgressTracker progress) {
+        MergeSequence edges = spatialIndex ? boruvkaSpanningTree(limits, progress) : spanningTree(limits, progress);
+        if (edges != null) {
+            edges.sortByHeight();
+        }
+        return edges;
+    }
+
+    /**
+     * Converte gli archi ordinati dell'albero ricoprente minimo nelle fusioni del
+     * dendrogramma single-link.
+     *
+     * @param edges gli archi dell'albero, ordinati per peso crescente.
+     * @param n     il numero di esempi.
+     * @return la sequenza delle fusioni, ordinata per distanza crescente.
+     */
+    static MergeSequence toMerges(MergeSequence edges, int n) {
+        // Unisce le componenti lungo gli archi ordinati; ogni componente è identificata
+        // dallo slot del suo esempio di indice minimo.
+        int[] parent = new int[n];
+        int[] slot = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            slot[i] = i;
+        }
+
+        MergeSequence merges = new MergeSequence(edges.size());
+        for (int e = 0; e < edges.size(); e++) {
+            int root1 = find(parent, edges.getFirst(e));
+            int root2 = find(parent, edges.getSecond(e));
+            merges.add(slot[root1], slot[root2], edges.getHeight(e));
+            parent[root2] = root1;
+            slot[root1] = Math.min(slot[root1], slot[root2]);
+        }
+        return merges;
+    }
+
+    /**
+     * Aggiorna l'albero ricoprente minimo dopo l'aggiunta di nuovi esempi in coda ai dati.
+     * Ogni nuovo esempio z viene inserito in tempo O(n) con l'algoritmo di Chin e Houck:
+     * l'albero precedente viene visitato dalle foglie verso la radice e per ogni
+     * sottoalbero resta in sospeso l'arco più pesante sul cammino verso z, l'unico che
+     * può essere sostituito; gli archi del sottoalbero di un figlio e l'arco verso il
+     * figlio formano con quello in sospeso un ciclo, da cui si elimina l'arco più pesante.
+     *
+     * @param edges gli archi dell'albero dei primi from esempi.
+     * @param data  i dati, con i nuovi esempi dalla posizione from in poi.
+     * @param from  il numero di esempi coperti dall'albero.
+     * @return gli archi dell'albero di tutti gli esempi, ordinati per peso crescente.
+     */
+    static MergeSequence insert(MergeSequence edges, Data data, int from) {
+        int n = data.getNumberOfExamples();
+        for (int z = Math.max(from, 1); z < n; z++) {
+            edges = insertVertex(edges, data, z);
+        }
+        edges.sortByHeight();
+        return edges;
+    }
+
+    /**
+     * Aggiunge l'esempio z all'albero ricoprente minimo degli esempi da 0 a z-1.
+     *
+     * @param edges gli archi dell'albero degli esempi da 0 a z-1.
+     * @param data  i dati contenenti gli esempi.
+     * @param z     l'esempio da aggiungere.
+     * @return gli archi dell'albero degli esempi da 0 a z.
+     */
+    private static MergeSequence insertVertex(MergeSequence edges, Data data, int z) {
+        // Liste di adiacenza dell'albero attuale
+        int[] degree = new int[z + 1];
+        for (int e = 0; e < edges.size(); e++) {
+            degree[edges.getFirst(e)]++;
+            degree[edges.getSecond(e)]++;
+        }
+        int[] firstAdjacent = new int[z + 1];
+        for (int v = 0; v < z; v++) {
+            firstAdjacent[v + 1] = firstAdjacent[v] + degree[v];
+        }
+        int[] adjacent = new int[2 * edges.size()];
+        int[] adjacentEdge = new int[2 * edges.size()];
+        int[] next = firstAdjacent.clone();
+        for (int e = 0; e < edges.size(); e++) {
+            int a = edges.getFirst(e);
+            int b = edges.getSecond(e);
+            adjacentEdge[next[a]] = e;
+            adjacent[next[a]++] = b;
+            adjacentEdge[next[b]] = e;
+            adjacent[next[b]++] = a;
+        }
+
+        // Visita in profondità dalla radice 0, senza ricorsione
+        int[] order = new int[z];
+        int[] parent = new int[z];
+        int[] parentEdge = new int[z];
+        int[] stack = new int[z];
+        int visited = 0;
+        int top = 0;
+        parent[0] = -1;
+        stack[top++] = 0;
+        while (top > 0) {
+            int v = stack[--top];
+            order[visited++] = v;
+            for (int k = firstAdjacent[v]; k < firstAdjacent[v + 1]; k++) {
+                if (adjacent[k] != parent[v]) {
+                    parent[adjacent[k]] = v;
+                    parentEdge[adjacent[k]] = adjacentEdge[k];
+                    stack[top++] = adjacent[k];
+                }
+            }
+        }
+
+        // Arco in sospeso di ogni sottoalbero, inizialmente quello verso z
+        int[] pendingFrom = new int[z];
+        int[] pendingTo = new int[z];
+        double[] pendingHeight = new double[z];
+        for (int v = 0; v < z; v++) {
+            pendingFrom[v] = v;
+            pendingTo[v] = z;
+            pendingHeight[v] = data.distance(v, z);
+        }
+
+        MergeSequence tree = new MergeSequence(z);
+        for (int i = z - 1; i > 0; i--) {
+            int v = order[i];
+            int u = parent[v];
+            int e = parentEdge[v];
+            // h è il più leggero tra l'arco in sospeso di v e l'arco (u, v) e resta nell'albero;
+            // il più pesante k compete con l'arco in sospeso di u
+            boolean pendingIsLighter = pendingHeight[v] <= edges.getHeight(e);
+            if (pendingIsLighter) {
+                tree.add(pendingFrom[v], pendingTo[v], pendingHeight[v]);
+            } else {
+                tree.add(edges.getFirst(e), edges.getSecond(e), edges.getHeight(e));
+            }
+            int kFrom = pendingIsLighter ? edges.getFirst(e) : pendingFrom[v];
+            int kTo = pendingIsLighter ? edges.getSecond(e) : pendingTo[v];
+            double kHeight = pendingIsLighter ? edges.getHeight(e) : pendingHeight[v];
+            if (kHeight < pendingHeight[u]) {
+                pendingFrom[u] = kFrom;
+                pendingTo[u] = kTo;
+                pendingHeight[u] = kHeight;
+            }
+        }
+        tree.add(pendingFrom[0], pendingTo[0], pendingHeight[0]);
+        return tree;
+    }
+
+    /**
+     * Costruisce l'albero ricoprente minimo con l'algoritmo di Prim.
+     *
+     * @param limits   i criteri di arresto.
+     * @param progress l'oggetto a cui notificare gli archi trovati.
+     * @return gli archi dell'albero, nell'ordine in cui sono stati aggiunti, oppure
+     * null se il tempo massimo è scaduto o il clustering è stato annullato.
+     */
+    private MergeSequence spanningTree(MiningLimits limits, ProgressTracker progress) {
+        MergeSequence edges = new MergeSequence(Math.max(n - 1, 0));
+        double[] best = new double[n]; // distanza minima di ogni esempio dall'albero
+        int[] from = new int[n]; // esempio dell'albero che realizza la distanza minima
+        int[] outside = new int[n]; // esempi non ancora nell'albero
+        int outsideCount = 0;
+        for (int i = 1; i < n; i++) {
+            best[i] = Double.POSITIVE_INFINITY;
+            outside[outsideCount++] = i;
+        }
+
+        int current = 0;
+        while (outsideCount > 0) {
+            if (limits.mustStop()) {
+                return null;
+            }
+            int nextIndex = 0;
+            for (int p = 0; p < outsideCount; p++) {
+                int k = outside[p];
+                double d = data.distance(current, k);
+                if (d < best[k]) {
+                    best[k] = d;
+                    from[k] = current;
+                }
+                if (best[k] < best[outside[nextIndex]]) {
+                    nextIndex = p;
+                }
+            }
+
+            current = outside[nextIndex];
+            edges.add(from[current], current, best[current]);
+            outside[nextIndex] = outside[--outsideCount];
+            progress.update(edges.size());
+        }
+        return edges;
+    }
+
+    /**
+     * Costruisce l'albero ricoprente minimo con l'algoritmo di Borůvka: a ogni passo
+     * ogni componente viene collegata alla componente più vicina con l'arco più corto
+     * che esce da essa, per cui il numero di componenti almeno si dimezza. L'arco più
+     * corto di ogni componente è cercato nel {@link KdTree}.
+     * A parità di distanza gli archi sono confrontati per indici degli esempi, così
+     * l'arco scelto da ogni componente è univoco.
+     *
+     * @param limits   i criteri di arresto.
+     * @param progress l'oggetto a cui notificare gli archi trovati.
+     * @return gli archi dell'albero, oppure null se il tempo massimo è scaduto o il
+     * clustering è stato annullato.
+     */
+    private MergeSequence boruvkaSpanningTree(MiningLimits limits, ProgressTracker progress) {
+        MergeSequence edges = new MergeSequence(Math.max(n - 1, 0));
+        if (n < 2) {
+            return edges;
+        }
+        KdTree tree = new KdTree(data);
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+        }
+
+        int[] component = new int[n];
+        int[] bestFrom = new int[n]; // esempio della componente da cui esce l'arco più corto
+        int[] bestTo = new int[n]; // esempio di un'altra componente in cui entra l'arco
+        double[] bestDistance = new double[n]; // lunghezza dell'arco più corto
+        while (edges.size() < n - 1) {
+            if (limits.mustStop()) {
+                return null;
+            }
+            for (int i = 0; i < n; i++) {
+                component[i] = find(parent, i);
+                bestFrom[i] = -1;
+            }
+            int[] neighbor = tree.nearestWithDifferentLabel(component);
+
+            // Sceglie per ogni componente l'arco più corto verso un'altra componente
+            for (int i = 0; i < n; i++) {
+                int j = neighbor[i];
+                if (j < 0) {
+                    continue;
+                }
+                int c = component[i];
+                double d = data.distance(i, j);
+                if (bestFrom[c] < 0 || isShorter(d, i, j, bestDistance[c], bestFrom[c], bestTo[c])) {
+                    bestFrom[c] = i;
+                    bestTo[c] = j;
+                    bestDistance[c] = d;
+                }
+            }
+
+            // Aggiunge gli archi scelti, ignorando quelli tra componenti già unite in questo passo
+            for (int c = 0; c < n; c++) {
+                if (bestFrom[c] >= 0) {
+                    int root1 = find(parent, bestFrom[c]);
+                    int root2 = find(parent, bestTo[c]);
+                    if (root1 != root2) {
+                        edges.add(bestFrom[c], bestTo[c], bestDistance[c]);
+                        parent[root2] = root1;
+                    }
+                }
+            }
+            progress.update(edges.size());
+        }
+        return edges;
+    }
+
+    /**
+     * Confronta due archi per lunghezza e, a parità di lunghezza, per indici degli esempi.
+     *
+     * @param d1 la lunghezza del primo arco.
+     * @param a1 un estremo del primo arco.
+     * @param b1 l'altro estremo del primo arco.
+     * @param d2 la lunghezza del secondo arco.
+     * @param a2 un estremo del secondo arco.
+     * @param b2 l'altro estremo del secondo arco.
+     * @return true se il primo arco precede il secondo.
+     */
+    private static boolean isShorter(double d1, int a1, int b1, double d2, int a2, int b2) {
+        if (d1 != d2) {
+            return d1 < d2;
+        }
+        int min1 = Math.min(a1, b1);
+        int min2 = Math.min(a2, b2);
+        return min1 != min2 ? min1 < min2 : Math.max(a1, b1) < Math.max(a2, b2);
+    }
+
+    /**
+     * Restituisce la radice della componente che contiene l'esempio specificato,
+     * comprimendo il cammino percorso.
+     *
+     * @param parent il vettore dei padri delle componenti.
+     * @param i      l'esempio di cui cercare la radice.
+     * @return la radice della componente.
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package clustering;
+
+/**
+ * La classe MiningLimits raccoglie i criteri con cui {@link HierachicalClusterMiner}
+ * può fermarsi prima di aver costruito tutti i livelli del dendrogramma: una distanza
+ * massima di fusione, un numero di cluster da raggiungere, un tempo massimo e la
+ * richiesta di annullamento.
+ */
+final class MiningLimits {
+
+    private final double maxHeight; // distanza massima di una fusione
+    private final int maxMerges; // numero massimo di fusioni
+    private final long deadline; // istante di scadenza secondo System.nanoTime()
+    private final boolean timed; // true se è stato fissato un tempo massimo
+    private final CancellationToken cancellation; // richiesta di annullamento, oppure null
+
+    /**
+     * Costruttore che fissa i criteri di arresto a partire dall'istante corrente.
+     *
+     * @param maxHeight        la distanza massima di una fusione.
+     * @param targetClusters   il numero di cluster a cui fermarsi, 1 per nessun limite.
+     * @param timeBudgetMillis il tempo massimo in millisecondi, 0 per nessun limite.
+     * @param numberOfExamples il numero di esempi da clusterizzare.
+     * @param cancellation     il token di annullamento, oppure null.
+     */
+    MiningLimits(double maxHeight, int targetClusters, long timeBudgetMillis, int numberOfExamples,
+                 CancellationToken cancellation) {
+        this.maxHeight = maxHeight;
+        this.maxMerges = Math.max(0, numberOfExamples - targetClusters);
+        this.timed = timeBudgetMillis > 0;
+        // Il tempo è limitato a circa 146 anni, così la scadenza non supera Long.MAX_VALUE
+        this.deadline = System.nanoTime() + Math.min(timeBudgetMillis, Long.MAX_VALUE / 2_000_000L) * 1_000_000L;
+        this.cancellation = cancellation;
+    }
+
+    /**
+     * Indica se è stato raggiunto il numero di cluster richiesto.
+     *
+     * @param merges il numero di fusioni già effettuate.
+     * @return true se non si deve effettuare un'altra fusione.
+     */
+    boolean reachedTarget(int merges) {
+        return merges >= maxMerges;
+    }
+
+    /**
+     * Indica se una fusione alla distanza specificata supera la distanza massima.
+     *
+     * @param height la distanza di fusione.
+     * @return true se la fusione non deve essere effettuata.
+     */
+    boolean exceedsHeight(double height) {
+        return height > maxHeight;
+    }
+
+    /**
+     * Indica se il clustering deve fermarsi perché il tempo massimo è scaduto o perché
+     * è stato annullato.
+     *
+     * @return true se il clustering deve fermarsi.
+     */
+    boolean mustStop() {
+        return (cancellation != null && cancellation.isCancelled()) || (timed && System.nanoTime() - deadline > 0);
+    }
+}
\ No newline at end of file
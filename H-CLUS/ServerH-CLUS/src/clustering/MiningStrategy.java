@@ -0,0 +1,40 @@
+package clustering;
+
+/**
+ * Enumerazione delle strategie con cui {@link HierachicalClusterMiner} costruisce
+ * il dendrogramma.
+ */
+public enum MiningStrategy {
+    /**
+     * Ricalcola a ogni livello la distanza tra tutte le coppie di cluster.
+     * Funziona con qualsiasi {@link distance.ClusterDistance}.
+     */
+    NAIVE,
+    /**
+     * Mantiene una matrice delle distanze tra cluster aggiornata con la formula di
+     * Lance-Williams e cerca a ogni livello la coppia più vicina.
+     * Produce le stesse fusioni di {@link #NAIVE}.
+     */
+    LANCE_WILLIAMS,
+    /**
+     * Costruisce l'intera sequenza di fusioni con l'algoritmo della catena dei vicini
+     * più prossimi, in tempo O(n^2) complessivo. Richiede una distanza riducibile
+     * (single-link, average-link, complete-link, Ward); a parità di distanza l'ordine
+     * delle fusioni può differire da quello di {@link #NAIVE}.
+     */
+    NN_CHAIN,
+    /**
+     * Calcola il dendrogramma single-link dall'albero ricoprente minimo degli esempi,
+     * costruito con l'algoritmo di Prim calcolando le distanze al momento.
+     * Richiede O(n) memoria aggiuntiva e tempo O(n^2); si applica solo a
+     * {@link distance.SingleLinkDistance}.
+     */
+    SINGLE_LINK_MST,
+    /**
+     * Calcola il dendrogramma single-link dall'albero ricoprente minimo degli esempi,
+     * costruito con l'algoritmo di Borůvka e le ricerche del vicino più prossimo in un
+     * {@link data.KdTree}. Con pochi attributi il tempo è circa O(n log^2 n); si applica
+     * solo a {@link distance.SingleLinkDistance}.
+     */
+    SINGLE_LINK_BORUVKA
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package clustering;
+
+import distance.LanceWilliamsDistance;
+
+import java.util.Arrays;
+
+/**
+ * La classe NearestNeighborChainEngine calcola l'intera sequenza di fusioni con
+ * l'algoritmo della catena dei vicini più prossimi (NN-chain).
+ * La catena viene estesa con il vicino più prossimo dell'ultimo cluster finché due
+ * cluster non risultano reciprocamente più vicini; a quel punto vengono fusi.
+ * Per le distanze riducibili le fusioni ottenute, ordinate per distanza, formano lo
+ * stesso dendrogramma della ricerca della coppia più vicina a ogni livello, in tempo
+ * O(n^2) complessivo.
+ */
+class NearestNeighborChainEngine {
+
+    private final int n; // numero di esempi
+    private final ClusterDistanceMatrix matrix; // distanze tra i cluster attivi
+    private final LanceWilliamsDistance distance;
+
+    /**
+     * Costruttore che parte dalla matrice delle distanze tra i cluster del livello base.
+     *
+     * @param matrix   la matrice delle distanze tra i cluster del livello base.
+     * @param n        il numero di cluster del livello base.
+     * @param distance la misura di distanza tra cluster, che deve essere riducibile.
+     */
+    NearestNeighborChainEngine(ClusterDistanceMatrix matrix, int n, LanceWilliamsDistance distance) {
+        this.n = n;
+        this.matrix = matrix;
+        this.distance = distance;
+    }
+
+    /**
+     * Calcola tutte le n-1 fusioni e le restituisce ordinate per distanza crescente.
+     * Le fusioni sono trovate in ordine sparso, quindi se il tempo massimo scade o il
+     * clustering viene annullato prima della fine non ci sono livelli completi da
+     * restituire.
+     *
+     * @param limits   i criteri di arresto.
+     * @param progress l'oggetto a cui notificare le fusioni trovate.
+     * @return la sequenza delle fusioni, oppure null se il tempo massimo è scaduto o il
+     * clustering è stato annullato.
+     */
+    MergeSequence computeMerges(MiningLimits limits, ProgressTracker progress) {
+        MergeSequence merges = new MergeSequence(Math.max(n - 1, 0));
+        int[] slots = new int[n]; // slot dei cluster attivi, in ordine crescente
+        for (int i = 0; i < n; i++) {
+            slots[i] = i;
+        }
+        int activeClusters = n;
+
+        int[] chain = new int[n];
+        int chainLength = 0;
+
+        while (activeClusters > 1) {
+            if (limits.mustStop()) {
+                return null;
+            }
+            if (chainLength == 0) {
+                chain[chainLength++] = slots[0];
+            }
+            int a = chain[chainLength - 1];
+            int previous = chainLength >= 2 ? chain[chainLength - 2] : -1;
+
+            // Cerca il vicino più prossimo di a, preferendo il predecessore nella catena a parità di distanza
+            int nearest = previous;
+            double minDistance = previous >= 0 ? matrix.get(a, previous) : Double.POSITIVE_INFINITY;
+            for (int p = 0; p < activeClusters; p++) {
+                int k = slots[p];
+                if (k != a && (nearest < 0 || matrix.get(a, k) < minDistance)) {
+                    nearest = k;
+                    minDistance = matrix.get(a, k);
+                }
+            }
+
+            if (nearest == previous) {
+                // a e previous sono reciprocamente più vicini: vengono fusi
+                chainLength -= 2;
+                int first = Math.min(a, previous);
+                int second = Math.max(a, previous);
+                merges.add(first, second, minDistance);
+                matrix.merge(first, second, slots, activeClusters, distance);
+
+                int index2 = Arrays.binarySearch(slots, 0, activeClusters, second);
+                System.arraycopy(slots, index2 + 1, slots, index2, activeClusters - index2 - 1);
+                activeClusters--;
+                progress.update(merges.size());
+            } else {
+                chain[chainLength++] = nearest;
+            }
+        }
+
+        merges.sortByHeight();
+        return merges;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package clustering;
+
+import data.Data;
+import data.DistancePrecision;
+import data.NoDataException;
+import distance.AverageLinkDistance;
+import distance.ClusterDistance;
+import distance.SingleLinkDistance;
+
+/**
+ * La classe PrecisionComparison misura quanto la precisione della matrice delle
+ * distanze influisce sul dendrogramma: costruisce il dendrogramma di riferimento con
+ * distanze in double e lo confronta con quelli ottenuti con le precisioni ridotte,
+ * riportando anche la memoria occupata dalle matrici delle distanze durante il
+ * clustering.
+ */
+public class PrecisionComparison {
+
+    private PrecisionComparison() {
+    }
+
+    /**
+     * Risultato del confronto di una precisione con quella double.
+     */
+    public static class Result {
+        private final int differentLevels; // livelli con cluster diversi dal riferimento
+        private final long memory; // byte occupati dalle matrici delle distanze
+
+        /**
+         * Costruttore che memorizza il risultato di un confronto.
+         *
+         * @param differentLevels il numero di livelli diversi dal riferimento.
+         * @param memory          la memoria occupata dalle matrici delle distanze.
+         */
+        Result(int differentLevels, long memory) {
+            this.differentLevels = differentLevels;
+            this.memory = memory;
+        }
+
+        /**
+         * Restituisce il numero di livelli con cluster diversi da quelli di riferimento.
+         *
+         * @return il numero di livelli diversi.
+         */
+        public int getDifferentLevels() {
+            return differentLevels;
+        }
+
+        /**
+         * Restituisce la memoria occupata nello heap dalle matrici delle distanze durante
+         * il clustering con la precisione confrontata, vedi
+         * {@link HierachicalClusterMiner#getDistanceMemory()}.
+         *
+         * @return la memoria occupata in byte.
+         */
+        public long getMemory() {
+            return memory;
+        }
+    }
+
+    /**
+     * Confronta il dendrogramma ottenuto memorizzando le distanze con la precisione
+     * specificata con quello ottenuto in double.
+     *
+     * @param data      i dati da clusterizzare.
+     * @param distance  la misura di distanza tra cluster.
+     * @param depth     la profondità del dendrogramma.
+     * @param strategy  la strategia di costruzione del dendrogramma.
+     * @param precision la precisione da confrontare con quella double.
+     * @return i livelli diversi e la memoria occupata con la precisione specificata.
+     * @throws InvalidDepthException se la profondità è minore o uguale a zero.
+     * @throws InvalidSizeException  se il numero di esempi nei dati è inferiore a due.
+     */
+    public static Result compare(Data data, ClusterDistance distance, int depth,
+                                 MiningStrategy strategy, DistancePrecision precision)
+            throws InvalidDepthException, InvalidSizeException {
+        HierachicalClusterMiner reference = new HierachicalClusterMiner(depth, strategy);
+        reference.mine(data.withDistancePrecision(DistancePrecision.DOUBLE), distance);
+        HierachicalClusterMiner reduced = new HierachicalClusterMiner(depth, strategy);
+        reduced.mine(data.withDistancePrecision(precision), distance);
+        return new Result(reduced.countDifferentLevels(reference), reduced.getDistanceMemory());
+    }
+
+    /**
+     * Conta i livelli del dendrogramma che cambiano memorizzando le distanze con la
+     * precisione specificata invece che in double.
+     *
+     * @param data      i dati da clusterizzare.
+     * @param distance  la misura di distanza tra cluster.
+     * @param depth     la profondità del dendrogramma.
+     * @param strategy  la strategia di costruzione del dendrogramma.
+     * @param precision la precisione da confrontare con quella double.
+     * @return il numero di livelli con cluster diversi da quelli di riferimento.
+     * @throws InvalidDepthException se la profondità è minore o uguale a zero.
+     * @throws InvalidSizeException  se il numero di esempi nei dati è inferiore a due.
+     */
+    public static int countDifferentLevels(Data data, ClusterDistance distance, int depth,
+                                           MiningStrategy strategy, DistancePrecision precision)
+            throws InvalidDepthException, InvalidSizeException {
+        return compare(data, distance, depth, strategy, precision).getDifferentLevels();
+    }
+
+    /**
+     * Stampa, per ogni precisione e per le distanze single-link e average-link, il
+     * numero di livelli diversi dal riferimento e la memoria occupata dalle matrici
+     * delle distanze sui dati di una tabella.
+     *
+     * @param args il nome della tabella e, opzionalmente, la profondità del dendrogramma.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Uso: PrecisionComparison <tabella> [profondità]");
+            return;
+        }
+        try {
+            Data data = new Data(args[0]);
+            int depth = args.length > 1 ? Integer.parseInt(args[1]) : data.getNumberOfExamples();
+            ClusterDistance[] distances = {new SingleLinkDistance(), new AverageLinkDistance()};
+            for (ClusterDistance distance : distances) {
+                for (DistancePrecision precision : DistancePrecision.values()) {
+                    Result result = compare(data, distance, depth, MiningStrategy.LANCE_WILLIAMS, precision);
+                    System.out.println(distance.getClass().getSimpleName() + " " + precision + ": "
+                            + result.getDifferentLevels() + " livelli diversi su " + (depth - 1)
+                            + ", " + result.getMemory() / 1024 + " KB per le distanze");
+                }
+            }
+        } catch (NoDataException | InvalidDepthException | InvalidSizeException e) {
+            System.out.println("Errore: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package clustering;
+
+/**
+ * Interfaccia degli oggetti che ricevono l'avanzamento di
+ * {@link HierachicalClusterMiner#mine(data.Data, distance.ClusterDistance)}.
+ * Il metodo viene chiamato dal thread che esegue il clustering, al più alcune volte al
+ * secondo e sempre al termine.
+ */
+public interface ProgressListener {
+
+    /**
+     * Notifica l'avanzamento del clustering.
+     *
+     * @param completedMerges il numero di fusioni effettuate.
+     * @param totalMerges     il numero di fusioni previste.
+     * @param mergesPerSecond il numero medio di fusioni al secondo dall'inizio.
+     * @param remainingMillis il tempo stimato per terminare in millisecondi, -1 se non stimabile.
+     */
+    void progressChanged(int completedMerges, int totalMerges, double mergesPerSecond, long remainingMillis);
+}
\ No newline at end of file
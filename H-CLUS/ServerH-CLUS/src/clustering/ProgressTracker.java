@@ -0,0 +1,68 @@
+package clustering;
+
+/**
+ * La classe ProgressTracker calcola la velocità e il tempo stimato di un clustering e
+ * li notifica a un {@link ProgressListener}, non più di una volta ogni
+ * {@value #INTERVAL_MILLIS} millisecondi.
+ */
+final class ProgressTracker {
+
+    private static final long INTERVAL_MILLIS = 200;
+
+    private final ProgressListener listener; // destinatario delle notifiche, oppure null
+    private final int totalMerges;
+    private final long start = System.nanoTime();
+    private long lastReport = start;
+
+    /**
+     * Costruttore che inizia a misurare il tempo dall'istante corrente.
+     *
+     * @param listener    il destinatario delle notifiche, oppure null per non notificare.
+     * @param totalMerges il numero di fusioni previste.
+     */
+    ProgressTracker(ProgressListener listener, int totalMerges) {
+        this.listener = listener;
+        this.totalMerges = totalMerges;
+    }
+
+    /**
+     * Registra il numero di fusioni effettuate e lo notifica se è trascorso abbastanza
+     * tempo dall'ultima notifica.
+     *
+     * @param completedMerges il numero di fusioni effettuate.
+     */
+    void update(int completedMerges) {
+        if (listener == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastReport >= INTERVAL_MILLIS * 1_000_000L) {
+            report(completedMerges, now);
+        }
+    }
+
+    /**
+     * Notifica lo stato finale del clustering.
+     *
+     * @param completedMerges il numero di fusioni effettuate.
+     */
+    void finish(int completedMerges) {
+        if (listener != null) {
+            report(completedMerges, System.nanoTime());
+        }
+    }
+
+    /**
+     * Calcola velocità e tempo stimato e li notifica.
+     *
+     * @param completedMerges il numero di fusioni effettuate.
+     * @param now             l'istante corrente secondo System.nanoTime().
+     */
+    private void report(int completedMerges, long now) {
+        lastReport = now;
+        double seconds = (now - start) / 1e9;
+        double rate = seconds > 0 ? completedMerges / seconds : 0;
+        long remaining = rate > 0 ? (long) ((totalMerges - completedMerges) / rate * 1000) : -1;
+        listener.progressChanged(completedMerges, totalMerges, rate, remaining);
+    }
+}
\ No newline at end of file
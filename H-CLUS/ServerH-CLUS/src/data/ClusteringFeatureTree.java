@@ -0,0 +1,480 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La classe ClusteringFeatureTree riassume un insieme di righe, lette una sola volta,
+ * in un numero limitato di micro-cluster, come nella prima fase dell'algoritmo BIRCH.
+ * <p>
+ * Ogni micro-cluster è descritto dalla sua clustering feature: numero di righe, somma
+ * dei valori e somma dei quadrati, da cui si ricavano centroide e raggio. Le righe
+ * scendono nell'albero verso il centroide più vicino e, in una foglia, vengono
+ * assorbite dal micro-cluster più vicino se il suo raggio resta entro la soglia,
+ * altrimenti formano un nuovo micro-cluster. I nodi che superano la capacità sono
+ * divisi in due. Quando i micro-cluster superano il massimo consentito la soglia
+ * viene aumentata e l'albero viene ricostruito a partire dai micro-cluster esistenti,
+ * per cui la memoria occupata non dipende dal numero di righe.
+ * <p>
+ * Con la soglia iniziale pari a 0 vengono fuse solo le righe identiche: finché il
+ * massimo non viene superato ogni micro-cluster contiene copie di una sola riga, anche
+ * se righe identiche possono finire in micro-cluster diversi.
+ */
+public class ClusteringFeatureTree {
+
+    private static final int BRANCHING_FACTOR = 50; // numero massimo di figli di un nodo interno
+    private static final int LEAF_CAPACITY = 50; // numero massimo di micro-cluster di una foglia
+
+    /**
+     * Clustering feature di un insieme di righe.
+     */
+    private static class ClusteringFeature {
+        private long count; // numero di righe
+        private final double[] linearSum; // somma dei valori di ogni attributo
+        private double squareSum; // somma dei quadrati di tutti i valori
+
+        /**
+         * Costruttore che crea la clustering feature di un insieme vuoto.
+         *
+         * @param attributes il numero di attributi.
+         */
+        ClusteringFeature(int attributes) {
+            this.linearSum = new double[attributes];
+        }
+
+        /**
+         * Costruttore che crea la clustering feature di una sola riga.
+         *
+         * @param row i valori della riga.
+         */
+        ClusteringFeature(double[] row) {
+            this.count = 1;
+            this.linearSum = row.clone();
+            for (double value : row) {
+                squareSum += value * value;
+            }
+        }
+
+        /**
+         * Aggiunge le righe di un'altra clustering feature.
+         *
+         * @param other la clustering feature da aggiungere.
+         */
+        void add(ClusteringFeature other) {
+            count += other.count;
+            for (int a = 0; a < linearSum.length; a++) {
+                linearSum[a] += other.linearSum[a];
+            }
+            squareSum += other.squareSum;
+        }
+
+        /**
+         * Calcola la distanza euclidea al quadrato tra i centroidi di due clustering feature.
+         *
+         * @param other l'altra clustering feature.
+         * @return la distanza al quadrato tra i centroidi.
+         */
+        double distance(ClusteringFeature other) {
+            double sum = 0;
+            for (int a = 0; a < linearSum.length; a++) {
+                double diff = linearSum[a] / count - other.linearSum[a] / other.count;
+                sum += diff * diff;
+            }
+            return sum;
+        }
+
+        /**
+         * Calcola il raggio al quadrato dell'insieme ottenuto unendo due clustering
+         * feature, cioè la distanza quadratica media delle righe dal centroide.
+         *
+         * @param other l'altra clustering feature.
+         * @return il raggio al quadrato dell'unione.
+         */
+        double mergedRadius(ClusteringFeature other) {
+            long n = count + other.count;
+            double centroidNorm = 0;
+            for (int a = 0; a < linearSum.length; a++) {
+                double mean = (linearSum[a] + other.linearSum[a]) / n;
+                centroidNorm += mean * mean;
+            }
+            return Math.max(0.0, (squareSum + other.squareSum) / n - centroidNorm);
+        }
+    }
+
+    /**
+     * Elemento di un nodo: la clustering feature di un micro-cluster, in una foglia, o
+     * di un sottoalbero, in un nodo interno.
+     */
+    private static class Entry {
+        private ClusteringFeature feature;
+        private final Node child; // sottoalbero, oppure null nelle foglie
+        private int index = -1; // posizione del micro-cluster tra gli esempi riassunti
+
+        Entry(ClusteringFeature feature, Node child) {
+            this.feature = feature;
+            this.child = child;
+        }
+    }
+
+    /**
+     * Nodo dell'albero.
+     */
+    private static class Node {
+        private final boolean leaf;
+        private final List<Entry> entries = new ArrayList<>();
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        /**
+         * Calcola la clustering feature di tutte le righe del nodo.
+         *
+         * @param attributes il numero di attributi.
+         * @return la clustering feature del nodo.
+         */
+        ClusteringFeature summary(int attributes) {
+            ClusteringFeature feature = new ClusteringFeature(attributes);
+            for (Entry entry : entries) {
+                feature.add(entry.feature);
+            }
+            return feature;
+        }
+
+        /**
+         * Restituisce l'elemento del nodo con il centroide più vicino.
+         *
+         * @param feature la clustering feature da confrontare.
+         * @return l'elemento più vicino.
+         */
+        Entry closest(ClusteringFeature feature) {
+            Entry closest = null;
+            double minDistance = Double.POSITIVE_INFINITY;
+            for (Entry entry : entries) {
+                double distance = entry.feature.distance(feature);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    closest = entry;
+                }
+            }
+            return closest;
+        }
+    }
+
+    private final int numberOfAttributes; // numero di attributi delle righe
+    private final int maxEntries; // numero massimo di micro-cluster
+    private Node root = new Node(true);
+    private double threshold = 0; // raggio al quadrato massimo di un micro-cluster
+    private int entries = 0; // numero di micro-cluster
+    private long rows = 0; // numero di righe inserite
+    private List<Entry> leafEntries; // micro-cluster nell'ordine degli esempi, dopo freeze()
+
+    /**
+     * Costruttore che crea un albero vuoto.
+     *
+     * @param numberOfAttributes il numero di attributi delle righe.
+     * @param maxEntries         il numero massimo di micro-cluster.
+     * @throws IllegalArgumentException se il numero di attributi o di micro-cluster non è positivo.
+     */
+    public ClusteringFeatureTree(int numberOfAttributes, int maxEntries) {
+        if (numberOfAttributes <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Il numero di attributi e di micro-cluster deve essere positivo.");
+        }
+        this.numberOfAttributes = numberOfAttributes;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Inserisce una riga nell'albero. La riga viene copiata.
+     *
+     * @param row i valori della riga.
+     * @throws IllegalArgumentException se il numero di valori è diverso dal numero di attributi.
+     * @throws IllegalStateException    se gli esempi riassunti sono già stati creati.
+     */
+    public void insert(double[] row) {
+        if (row.length != numberOfAttributes) {
+            throw new IllegalArgumentException("Il numero di valori è diverso dal numero di attributi.");
+        }
+        if (leafEntries != null) {
+            throw new IllegalStateException("L'albero non può essere modificato dopo la creazione degli esempi.");
+        }
+        insert(new ClusteringFeature(row));
+        rows++;
+        while (entries > maxEntries) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Inserisce una clustering feature dalla radice, aggiungendo una nuova radice se
+     * quella attuale viene divisa.
+     *
+     * @param feature la clustering feature da inserire.
+     */
+    private void insert(ClusteringFeature feature) {
+        Node sibling = insert(root, feature);
+        if (sibling != null) {
+            Node newRoot = new Node(false);
+            newRoot.entries.add(new Entry(root.summary(numberOfAttributes), root));
+            newRoot.entries.add(new Entry(sibling.summary(numberOfAttributes), sibling));
+            root = newRoot;
+        }
+    }
+
+    /**
+     * Inserisce una clustering feature nel sottoalbero di un nodo.
+     *
+     * @param node    il nodo.
+     * @param feature la clustering feature da inserire.
+     * @return il nuovo nodo creato dividendo node, oppure null se node non è stato diviso.
+     */
+    private Node insert(Node node, ClusteringFeature feature) {
+        Entry closest = node.closest(feature);
+        if (node.leaf) {
+            if (closest != null && closest.feature.mergedRadius(feature) <= threshold) {
+                closest.feature.add(feature);
+                return null;
+            }
+            ClusteringFeature copy = new ClusteringFeature(numberOfAttributes);
+            copy.add(feature);
+            node.entries.add(new Entry(copy, null));
+            entries++;
+            return node.entries.size() > LEAF_CAPACITY ? split(node) : null;
+        }
+
+        Node sibling = insert(closest.child, feature);
+        if (sibling == null) {
+            closest.feature.add(feature);
+            return null;
+        }
+        closest.feature = closest.child.summary(numberOfAttributes);
+        node.entries.add(new Entry(sibling.summary(numberOfAttributes), sibling));
+        return node.entries.size() > BRANCHING_FACTOR ? split(node) : null;
+    }
+
+    /**
+     * Divide un nodo in due: i due elementi più lontani diventano i semi dei due nodi e
+     * gli altri elementi vanno con il seme più vicino.
+     *
+     * @param node il nodo da dividere, che conserva gli elementi del primo seme.
+     * @return il nuovo nodo con gli elementi del secondo seme.
+     */
+    private Node split(Node node) {
+        List<Entry> all = new ArrayList<>(node.entries);
+        int seed1 = 0;
+        int seed2 = 1;
+        double maxDistance = -1;
+        for (int i = 0; i < all.size(); i++) {
+            for (int j = i + 1; j < all.size(); j++) {
+                double distance = all.get(i).feature.distance(all.get(j).feature);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    seed1 = i;
+                    seed2 = j;
+                }
+            }
+        }
+
+        Node sibling = new Node(node.leaf);
+        node.entries.clear();
+        ClusteringFeature first = all.get(seed1).feature;
+        ClusteringFeature second = all.get(seed2).feature;
+        for (int i = 0; i < all.size(); i++) {
+            Entry entry = all.get(i);
+            if (i == seed1 || (i != seed2 && entry.feature.distance(first) <= entry.feature.distance(second))) {
+                node.entries.add(entry);
+            } else {
+                sibling.entries.add(entry);
+            }
+        }
+        return sibling;
+    }
+
+    /**
+     * Aumenta la soglia e ricostruisce l'albero reinserendo i micro-cluster esistenti.
+     * La nuova soglia è almeno il doppio della precedente e almeno il più piccolo
+     * raggio positivo ottenibile fondendo due micro-cluster vicini, cioè della stessa
+     * foglia o di foglie adiacenti, così che la soglia cresca a ogni ricostruzione.
+     */
+    private void rebuild() {
+        List<Entry> old = new ArrayList<>();
+        collectLeafEntries(root, old);
+
+        double minMerge = Double.POSITIVE_INFINITY;
+        List<Node> leaves = new ArrayList<>();
+        collectLeaves(root, leaves);
+        for (Node leaf : leaves) {
+            for (int i = 0; i < leaf.entries.size(); i++) {
+                for (int j = i + 1; j < leaf.entries.size(); j++) {
+                    minMerge = minPositive(minMerge, leaf.entries.get(i).feature.mergedRadius(leaf.entries.get(j).feature));
+                }
+            }
+        }
+        for (int i = 1; i < old.size(); i++) {
+            minMerge = minPositive(minMerge, old.get(i - 1).feature.mergedRadius(old.get(i).feature));
+        }
+        threshold = Math.max(threshold * 2, minMerge == Double.POSITIVE_INFINITY ? 0 : minMerge);
+
+        root = new Node(true);
+        entries = 0;
+        for (Entry entry : old) {
+            insert(entry.feature);
+        }
+    }
+
+    /**
+     * Restituisce il minimo tra un valore e un candidato, ignorando il candidato se non
+     * è positivo.
+     *
+     * @param current   il minimo attuale.
+     * @param candidate il nuovo valore.
+     * @return il nuovo minimo.
+     */
+    private static double minPositive(double current, double candidate) {
+        return candidate > 0 ? Math.min(current, candidate) : current;
+    }
+
+    /**
+     * Aggiunge a una lista i micro-cluster del sottoalbero di un nodo, da sinistra a destra.
+     *
+     * @param node   il nodo.
+     * @param result la lista a cui aggiungere i micro-cluster.
+     */
+    private static void collectLeafEntries(Node node, List<Entry> result) {
+        if (node.leaf) {
+            result.addAll(node.entries);
+        } else {
+            for (Entry entry : node.entries) {
+                collectLeafEntries(entry.child, result);
+            }
+        }
+    }
+
+    /**
+     * Aggiunge a una lista le foglie del sottoalbero di un nodo.
+     *
+     * @param node   il nodo.
+     * @param result la lista a cui aggiungere le foglie.
+     */
+    private static void collectLeaves(Node node, List<Node> result) {
+        if (node.leaf) {
+            result.add(node);
+        } else {
+            for (Entry entry : node.entries) {
+                collectLeaves(entry.child, result);
+            }
+        }
+    }
+
+    /**
+     * Blocca l'albero e numera i micro-cluster, che diventano gli esempi riassunti.
+     *
+     * @throws IllegalStateException se un micro-cluster contiene più di Integer.MAX_VALUE righe.
+     */
+    void freeze() {
+        if (leafEntries == null) {
+            List<Entry> result = new ArrayList<>();
+            collectLeafEntries(root, result);
+            for (int i = 0; i < result.size(); i++) {
+                if (result.get(i).feature.count > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Un micro-cluster contiene troppe righe.");
+                }
+                result.get(i).index = i;
+            }
+            leafEntries = result;
+        }
+    }
+
+    /**
+     * Restituisce i centroidi dei micro-cluster, memorizzati per righe.
+     *
+     * @return i centroidi nell'ordine degli esempi riassunti.
+     */
+    double[] centroids() {
+        freeze();
+        double[] values = new double[leafEntries.size() * numberOfAttributes];
+        for (int i = 0; i < leafEntries.size(); i++) {
+            ClusteringFeature feature = leafEntries.get(i).feature;
+            for (int a = 0; a < numberOfAttributes; a++) {
+                values[i * numberOfAttributes + a] = feature.linearSum[a] / feature.count;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Restituisce il numero di righe di ogni micro-cluster.
+     *
+     * @return i pesi nell'ordine degli esempi riassunti.
+     */
+    int[] weights() {
+        freeze();
+        int[] weights = new int[leafEntries.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (int) leafEntries.get(i).feature.count;
+        }
+        return weights;
+    }
+
+    /**
+     * Restituisce il micro-cluster a cui appartiene una riga, scendendo nell'albero
+     * verso il centroide più vicino. Per una riga inserita nell'albero il risultato è il
+     * micro-cluster che la rappresenta, salvo quando le divisioni dei nodi successive
+     * all'inserimento l'hanno resa più vicina a un altro ramo.
+     *
+     * @param row i valori della riga.
+     * @return l'indice del micro-cluster tra gli esempi riassunti.
+     * @throws IllegalArgumentException se il numero di valori è diverso dal numero di attributi.
+     */
+    public int findEntry(double[] row) {
+        if (row.length != numberOfAttributes) {
+            throw new IllegalArgumentException("Il numero di valori è diverso dal numero di attributi.");
+        }
+        freeze();
+        ClusteringFeature feature = new ClusteringFeature(row);
+        Node node = root;
+        while (true) {
+            Entry closest = node.closest(feature);
+            if (node.leaf) {
+                return closest.index;
+            }
+            node = closest.child;
+        }
+    }
+
+    /**
+     * Restituisce il numero di micro-cluster.
+     *
+     * @return il numero di micro-cluster.
+     */
+    public int getNumberOfEntries() {
+        return entries;
+    }
+
+    /**
+     * Restituisce il numero di attributi delle righe.
+     *
+     * @return il numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return numberOfAttributes;
+    }
+
+    /**
+     * Restituisce il numero di righe inserite.
+     *
+     * @return il numero di righe.
+     */
+    public long getNumberOfRows() {
+        return rows;
+    }
+
+    /**
+     * Restituisce il raggio massimo attuale di un micro-cluster.
+     *
+     * @return la soglia sul raggio.
+     */
+    public double getThreshold() {
+        return Math.sqrt(threshold);
+    }
+}
\ No newline at end of file
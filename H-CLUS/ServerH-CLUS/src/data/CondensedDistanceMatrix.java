@@ -0,0 +1,56 @@
+package data;
+
+/**
+ * La classe CondensedDistanceMatrix memorizza le distanze tra gli esempi in forma
+ * condensata: solo le n(n-1)/2 coppie (i, j) con i minore di j, riga per riga, in un
+ * unico vettore di double.
+ * La matrice viene calcolata in parallelo, a blocchi di esempi, una sola volta e poi
+ * solo letta, quindi può essere condivisa tra più thread.
+ */
+public class CondensedDistanceMatrix implements DistanceMatrix {
+
+    private final int n; // numero di esempi
+    private final double[] distances; // distanze condensate, riga per riga
+
+    /**
+     * Costruttore che calcola in parallelo le distanze tra tutte le coppie di esempi.
+     *
+     * @param data          il dataset di cui calcolare le distanze.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme,
+     *                      come descritto in {@link TiledDistanceComputation#compute}.
+     */
+    CondensedDistanceMatrix(Data data, boolean normExpansion) {
+        this.n = data.getNumberOfExamples();
+        this.distances = new double[(int) ((long) n * (n - 1) / 2)];
+        TiledDistanceComputation.compute(data, normExpansion, (i, j, d) -> distances[rowOffset(i) + j] = d);
+    }
+
+    /**
+     * Restituisce lo scostamento della riga i nel vettore condensato: la distanza tra
+     * gli esempi i e j, con j maggiore di i, si trova in posizione rowOffset(i) + j.
+     *
+     * @param i l'indice della riga.
+     * @return lo scostamento della riga.
+     */
+    private int rowOffset(int i) {
+        return (int) ((long) i * n - (long) i * (i + 1) / 2 - i - 1);
+    }
+
+    @Override
+    public int getNumberOfExamples() {
+        return n;
+    }
+
+    @Override
+    public long memorySize() {
+        return 8L * distances.length;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        return i < j ? distances[rowOffset(i) + j] : distances[rowOffset(j) + i];
+    }
+}
\ No newline at end of file
@@ -3,18 +3,39 @@ package data;
 import clustering.InvalidSizeException;
 import database.DatabaseConnectionException;
 import database.DbAccess;
+import database.TableLoader;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 /**
  * La classe Data rappresenta un insieme di esempi letti da una tabella di un database.
+ * Gli esempi sono memorizzati per righe in un unico vettore di double: il valore j
+ * dell'esempio i si trova in posizione i * numberOfAttributes + j.
+ * <p>
+ * Ogni esempio ha un peso intero, pari a 1 se non specificato: un esempio di peso w
+ * rappresenta w righe identiche della tabella. Le misure di distanza tra cluster
+ * tengono conto dei pesi, quindi il clustering degli esempi pesati equivale a quello
+ * delle righe originali, con le distanze calcolate solo tra le righe distinte.
  */
 public class Data {
-    private List<Example> data = new ArrayList<>(); // Rappresenta il dataset.
+    private double[] data = new double[0]; // Rappresenta il dataset, memorizzato per righe.
     private int numberOfExamples; // Rappresenta il numero di esempi nel dataset.
+    private int numberOfAttributes; // Rappresenta il numero di attributi di ogni esempio.
+    private volatile DistanceMatrix distanceMatrix; // Distanze tra gli esempi, calcolate alla prima richiesta.
+    private String tableName = "data"; // Nome della tabella da cui sono stati letti gli esempi.
+    private DistancePrecision precision = defaultPrecision(); // Precisione della matrice delle distanze.
+    private int[] weights; // Peso di ogni esempio, oppure null se tutti gli esempi hanno peso 1.
+    private ClusteringFeatureTree summary; // Micro-cluster da cui sono stati ricavati gli esempi, oppure null.
+    private String[] attributeNames; // Nomi delle colonne della tabella, oppure null se non noti.
 
     /**
      * Costruttore che legge gli esempi da una tabella del database.
@@ -22,39 +43,35 @@ public class Data {
      * @throws NoDataException se si verifica un errore durante la lettura dei dati.
      */
     public Data(String tableName) throws NoDataException {
+        this(tableName, false);
+    }
+
+    /**
+     * Costruttore che legge gli esempi da una tabella del database, eventualmente
+     * raggruppando le righe identiche.
+     * Se collapseDuplicates è true ogni gruppo di righe identiche diventa un solo
+     * esempio, con peso pari al numero di righe del gruppo: la tabella viene letta con
+     * {@code COUNT(*) ... GROUP BY} su tutte le colonne.
+     *
+     * @param tableName          la tabella da cui leggere i dati.
+     * @param collapseDuplicates true per raggruppare le righe identiche in esempi pesati.
+     * @throws NoDataException se si verifica un errore durante la lettura dei dati.
+     */
+    public Data(String tableName, boolean collapseDuplicates) throws NoDataException {
         try {
             DbAccess dbAccess = new DbAccess(); // Presupponendo che esista una classe DbAccess.
-            String query = "SELECT * FROM " + tableName;
-
-            try (Connection connection = dbAccess.getConnection();
-                 Statement statement = connection.createStatement();
-                 ResultSet resultSet = statement.executeQuery(query)) {
-                // verifica se il result set è vuoto.
-                if (!resultSet.next()) {
-                    throw new EmptySetException("La tabella è vuota.");
-                }
+            this.tableName = tableName;
 
-                do {
-                    Example example = new Example();
-                    for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
-                        if (!(resultSet.getMetaData().getColumnType(i) == Types.INTEGER ||
-                                resultSet.getMetaData().getColumnType(i) == Types.FLOAT ||
-                                resultSet.getMetaData().getColumnType(i) == Types.DOUBLE ||
-                                resultSet.getMetaData().getColumnType(i) == Types.DECIMAL ||
-                                resultSet.getMetaData().getColumnType(i) == Types.NUMERIC ||
-                                resultSet.getMetaData().getColumnType(i) == Types.BIGINT ||
-                                resultSet.getMetaData().getColumnType(i) == Types.SMALLINT ||
-                                resultSet.getMetaData().getColumnType(i) == Types.TINYINT ||
-                                resultSet.getMetaData().getColumnType(i) == Types.REAL)) {
-                            throw new MissingNumberException("Attributo non numerico trovato.");
-                        }
-                        example.add(resultSet.getDouble(i));
-                    }
-                    data.add(example);
-                } while (resultSet.next());
-
-                // Aggiorna il numero degli esempi.
-                numberOfExamples = data.size();
+            try {
+                // Lo schema è validato una sola volta e le righe sono lette in un unico vettore.
+                TableLoader loader = new TableLoader(dbAccess, tableName);
+                TableLoader.Rows rows = loader.load(collapseDuplicates);
+                numberOfAttributes = loader.getNumberOfColumns();
+                attributeNames = loader.getColumnNames();
+                numberOfExamples = rows.getNumberOfRows();
+                // Le righe sono già memorizzate per righe e sono usate senza copiarle.
+                data = rows.getValues();
+                weights = rows.getCounts();
             } catch (SQLSyntaxErrorException e) {
                 throw new NoDataException("La tabella '" + tableName + "' non esiste nel database.");
             } catch (DatabaseConnectionException e) {
@@ -71,6 +88,292 @@ public class Data {
         }
     }
 
+    /**
+     * Legge una tabella del database in un solo passaggio e la riassume in al più
+     * maxExamples esempi pesati con un {@link ClusteringFeatureTree}: ogni esempio è il
+     * centroide di un micro-cluster e il suo peso è il numero di righe che contiene.
+     * Le righe sono lette una alla volta, senza caricare la tabella in memoria.
+     * Le righe originali possono essere ricondotte agli esempi con {@link #mapRows(int[])}.
+     *
+     * @param tableName   la tabella da cui leggere i dati.
+     * @param maxExamples il numero massimo di esempi.
+     * @return il dataset riassunto.
+     * @throws NoDataException se si verifica un errore durante la lettura dei dati.
+     */
+    public static Data preCluster(String tableName, int maxExamples) throws NoDataException {
+        ClusteringFeatureTree[] tree = new ClusteringFeatureTree[1];
+        scan(tableName, loader -> "", row -> {
+            if (tree[0] == null) {
+                tree[0] = new ClusteringFeatureTree(row.length, maxExamples);
+            }
+            tree[0].insert(row);
+        });
+
+        if (tree[0] == null) {
+            throw new NoDataException("La tabella è vuota.");
+        }
+        Data summarized = new Data(tree[0].centroids(), tree[0].getNumberOfAttributes(), tree[0].weights());
+        summarized.tableName = tableName;
+        summarized.summary = tree[0];
+        return summarized;
+    }
+
+    /**
+     * Riconduce alle righe della tabella le etichette assegnate agli esempi, ad esempio
+     * da {@link clustering.HierachicalClusterMiner#cutIntoClusters(int)}.
+     * Per un dataset creato con {@link #preCluster(String, int)} la tabella viene letta
+     * di nuovo e ogni riga riceve l'etichetta del micro-cluster più vicino; le righe sono
+     * numerate in ordine di chiave, oppure dei valori di tutte le colonne se la tabella non
+     * ha una chiave (vedi {@link TableLoader#orderClause()}), così che la numerazione non
+     * dipenda dall'ordine restituito dal database. Per un dataset non pesato le righe
+     * coincidono con gli esempi, nell'ordine in cui sono state lette.
+     * <p>
+     * La corrispondenza è approssimata: {@link ClusteringFeatureTree#findEntry(double[])}
+     * scende verso il centroide più vicino, quindi una riga può ricevere l'etichetta di un
+     * micro-cluster diverso da quello che l'ha assorbita durante la costruzione, se le
+     * divisioni successive dei nodi l'hanno avvicinata a un altro ramo.
+     *
+     * @param labels l'etichetta di ogni esempio.
+     * @return l'etichetta di ogni riga della tabella.
+     * @throws NoDataException          se la tabella non può essere letta di nuovo.
+     * @throws IllegalArgumentException se il numero di etichette è diverso dal numero di esempi.
+     * @throws IllegalStateException    se gli esempi pesati non sono stati ricavati da un
+     *                                  {@link ClusteringFeatureTree}.
+     */
+    public int[] mapRows(int[] labels) throws NoDataException {
+        if (labels.length != numberOfExamples) {
+            throw new IllegalArgumentException("Serve un'etichetta per ogni esempio.");
+        }
+        if (summary == null) {
+            if (weights != null) {
+                throw new IllegalStateException("Gli esempi pesati non possono essere ricondotti alle righe.");
+            }
+            return labels.clone();
+        }
+        if (summary.getNumberOfRows() > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("La tabella contiene troppe righe.");
+        }
+
+        int[] rowLabels = new int[(int) summary.getNumberOfRows()];
+        int[] row = {0};
+        scan(tableName, TableLoader::orderClause, values -> {
+            if (row[0] < rowLabels.length) {
+                rowLabels[row[0]] = labels[summary.findEntry(values)];
+            }
+            row[0]++;
+        });
+        if (row[0] != rowLabels.length) {
+            throw new IllegalStateException("La tabella '" + tableName + "' è cambiata dopo la lettura.");
+        }
+        return rowLabels;
+    }
+
+    /**
+     * Restituisce un dataset con gli esempi di questo seguiti dalle righe aggiunte alla
+     * tabella dopo la lettura. Le nuove righe sono riconosciute dalla chiave della tabella
+     * (la chiave primaria numerica o la colonna auto-incrementale): vengono lette, in
+     * ordine di chiave, solo le righe con chiave maggiore della massima già presente.
+     * Si assume quindi che la chiave cresca con l'inserimento delle righe.
+     *
+     * @return il dataset esteso, oppure questo dataset se non ci sono nuove righe.
+     * @throws NoDataException       se la tabella non può essere letta.
+     * @throws IllegalStateException se il dataset è pesato, perché gli esempi non
+     *                               corrispondono alle righe della tabella, oppure se la
+     *                               tabella non ha una chiave o il suo schema è cambiato.
+     */
+    public Data withNewRows() throws NoDataException {
+        if (weights != null) {
+            throw new IllegalStateException("Gli esempi pesati non corrispondono alle righe della tabella.");
+        }
+        double[][] values = {Arrays.copyOf(data, Math.max(data.length * 2, 16 * numberOfAttributes))};
+        int[] size = {data.length};
+        scan(tableName, loader -> {
+            if (loader.getNumberOfColumns() != numberOfAttributes) {
+                throw new IllegalStateException("Lo schema della tabella '" + tableName + "' è cambiato.");
+            }
+            int key = loader.getKeyIndex();
+            if (key < 0) {
+                throw new IllegalStateException("La tabella '" + tableName
+                        + "' non ha una chiave primaria numerica né una colonna auto-incrementale:"
+                        + " l'aggiornamento incrementale non è possibile.");
+            }
+            double lastKey = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < numberOfExamples; i++) {
+                lastKey = Math.max(lastKey, data[i * numberOfAttributes + key]);
+            }
+            String column = TableLoader.quote(loader.getColumnNames()[key]);
+            return " WHERE " + column + " > " + new BigDecimal(lastKey).toPlainString()
+                    + " ORDER BY " + column;
+        }, row -> {
+            if (row.length != numberOfAttributes) {
+                throw new IllegalStateException("Lo schema della tabella '" + tableName + "' è cambiato.");
+            }
+            if (size[0] + row.length > values[0].length) {
+                values[0] = Arrays.copyOf(values[0], values[0].length * 2);
+            }
+            System.arraycopy(row, 0, values[0], size[0], row.length);
+            size[0] += row.length;
+        });
+        if (size[0] == data.length) {
+            return this;
+        }
+
+        Data extended = new Data(Arrays.copyOf(values[0], size[0]), numberOfAttributes);
+        extended.tableName = tableName;
+        extended.precision = precision;
+        extended.attributeNames = attributeNames;
+        return extended;
+    }
+
+    /**
+     * Indica se questo dataset inizia con gli stessi esempi di un altro, eventualmente
+     * seguiti da altri esempi.
+     *
+     * @param previous il dataset da confrontare.
+     * @return true se gli esempi di previous sono i primi esempi di questo dataset.
+     */
+    public boolean isExtensionOf(Data previous) {
+        if (previous.numberOfAttributes != numberOfAttributes || previous.data.length > data.length) {
+            return false;
+        }
+        for (int k = 0; k < previous.data.length; k++) {
+            if (Double.compare(previous.data[k], data[k]) != 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < previous.numberOfExamples; i++) {
+            if (previous.getWeight(i) != getWeight(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Scrive una copia binaria del dataset, memorizzata per colonne, che può essere
+     * ricaricata con {@link #importSnapshot(Path)} senza interrogare il database.
+     * Il formato è descritto in {@link DataSnapshot}.
+     *
+     * @param file il file da scrivere.
+     * @throws IOException se il file non può essere scritto.
+     */
+    public void exportSnapshot(Path file) throws IOException {
+        DataSnapshot.write(this, file, 0);
+    }
+
+    /**
+     * Legge un dataset da una copia scritta con {@link #exportSnapshot(Path)}.
+     *
+     * @param file il file da leggere.
+     * @return il dataset.
+     * @throws IOException se il file non può essere letto o non è una copia valida.
+     */
+    public static Data importSnapshot(Path file) throws IOException {
+        return DataSnapshot.open(file).load();
+    }
+
+    /**
+     * Restituisce il vettore degli esempi, memorizzati per righe, senza copiarlo.
+     *
+     * @return i valori degli esempi.
+     */
+    double[] values() {
+        return data;
+    }
+
+    /**
+     * Restituisce il nome della tabella da cui sono stati letti gli esempi.
+     *
+     * @return il nome della tabella.
+     */
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Restituisce i nomi delle colonne della tabella da cui sono stati letti gli esempi.
+     *
+     * @return i nomi delle colonne, oppure null se non sono noti.
+     */
+    String[] getAttributeNames() {
+        return attributeNames;
+    }
+
+    /**
+     * Imposta la tabella da cui sono stati letti gli esempi di un dataset appena creato.
+     *
+     * @param tableName      il nome della tabella.
+     * @param attributeNames i nomi delle colonne, oppure null se non sono noti.
+     */
+    void setSource(String tableName, String[] attributeNames) {
+        this.tableName = tableName;
+        this.attributeNames = attributeNames;
+    }
+
+    /**
+     * Legge le righe di una tabella una alla volta con un {@link TableLoader}.
+     *
+     * @param tableName la tabella da leggere.
+     * @param suffix    calcola, dallo schema letto, il testo aggiunto alla query dopo il
+     *                  nome della tabella.
+     * @param consumer  la destinazione delle righe.
+     * @throws NoDataException se la tabella non esiste o contiene attributi non numerici.
+     */
+    private static void scan(String tableName, Function<TableLoader, String> suffix,
+                             TableLoader.RowConsumer consumer) throws NoDataException {
+        try {
+            TableLoader loader = new TableLoader(new DbAccess(), tableName);
+            loader.stream(suffix.apply(loader), consumer);
+        } catch (SQLSyntaxErrorException e) {
+            throw new NoDataException("La tabella '" + tableName + "' non esiste nel database.");
+        } catch (MissingNumberException e) {
+            throw new NoDataException("Attributo non numerico trovato.");
+        } catch (SQLException | DatabaseConnectionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Costruttore che crea il dataset a partire da valori già in memoria, memorizzati
+     * per righe.
+     *
+     * @param values             i valori degli esempi, memorizzati per righe.
+     * @param numberOfAttributes il numero di attributi di ogni esempio.
+     * @throws IllegalArgumentException se il numero di valori non è multiplo del numero di attributi.
+     */
+    public Data(double[] values, int numberOfAttributes) {
+        if (numberOfAttributes <= 0 || values.length % numberOfAttributes != 0) {
+            throw new IllegalArgumentException("Il numero di valori non è multiplo del numero di attributi.");
+        }
+        this.data = values;
+        this.numberOfAttributes = numberOfAttributes;
+        this.numberOfExamples = values.length / numberOfAttributes;
+    }
+
+    /**
+     * Costruttore che crea il dataset a partire da valori già in memoria, memorizzati
+     * per righe, assegnando un peso a ogni esempio.
+     *
+     * @param values             i valori degli esempi, memorizzati per righe.
+     * @param numberOfAttributes il numero di attributi di ogni esempio.
+     * @param weights            il peso di ogni esempio, cioè il numero di righe che rappresenta.
+     * @throws IllegalArgumentException se il numero di valori non è multiplo del numero di
+     *                                  attributi, se il numero di pesi è diverso dal numero di
+     *                                  esempi o se un peso non è positivo.
+     */
+    public Data(double[] values, int numberOfAttributes, int[] weights) {
+        this(values, numberOfAttributes);
+        if (weights.length != numberOfExamples) {
+            throw new IllegalArgumentException("Serve un peso per ogni esempio.");
+        }
+        for (int weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("I pesi degli esempi devono essere positivi.");
+            }
+        }
+        this.weights = weights.clone();
+    }
+
     /**
      *  Restituisce il numeri di esempi nel dataset.
      * @return il numero di esempi.
@@ -86,7 +389,241 @@ public class Data {
      * @return l'esempio all'indice specificato.
      */
     public Example getExample(int exampleIndex) {
-        return this.data.get(exampleIndex);
+        if (exampleIndex < 0 || exampleIndex >= numberOfExamples) {
+            throw new IndexOutOfBoundsException("Indice " + exampleIndex + " non valido per " + numberOfExamples + " esempi");
+        }
+        return new Example(data, exampleIndex * numberOfAttributes, numberOfAttributes);
+    }
+
+    /**
+     * Restituisce una copia del dataset, che condivide gli stessi esempi, la cui matrice
+     * delle distanze è memorizzata con la precisione specificata.
+     *
+     * @param precision la precisione della matrice delle distanze.
+     * @return il dataset con la precisione specificata.
+     */
+    public Data withDistancePrecision(DistancePrecision precision) {
+        Data copy = new Data(data, numberOfAttributes);
+        copy.tableName = tableName;
+        copy.precision = precision;
+        copy.weights = weights;
+        copy.summary = summary;
+        copy.attributeNames = attributeNames;
+        return copy;
+    }
+
+    /**
+     * Restituisce il peso di un esempio, cioè il numero di righe della tabella che
+     * l'esempio rappresenta.
+     *
+     * @param exampleIndex l'indice dell'esempio.
+     * @return il peso dell'esempio, 1 se il dataset non è pesato.
+     */
+    public int getWeight(int exampleIndex) {
+        return weights == null ? 1 : weights[exampleIndex];
+    }
+
+    /**
+     * Indica se gli esempi del dataset hanno pesi diversi da 1.
+     *
+     * @return true se il dataset è stato creato con dei pesi.
+     */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    /**
+     * Restituisce la precisione con cui è memorizzata la matrice delle distanze.
+     *
+     * @return la precisione della matrice delle distanze.
+     */
+    public DistancePrecision getDistancePrecision() {
+        return precision;
+    }
+
+    /**
+     * Restituisce la precisione indicata dalla proprietà di sistema
+     * {@code hclus.distance.precision}, oppure {@link DistancePrecision#DOUBLE}.
+     *
+     * @return la precisione predefinita della matrice delle distanze.
+     * @throws IllegalArgumentException se la proprietà non indica una precisione valida.
+     */
+    private static DistancePrecision defaultPrecision() {
+        return DistancePrecision.valueOf(System.getProperty("hclus.distance.precision", "DOUBLE").toUpperCase());
+    }
+
+    /**
+     * Restituisce il valore di un attributo di un esempio.
+     *
+     * @param exampleIndex l'indice dell'esempio.
+     * @param attribute    l'indice dell'attributo.
+     * @return il valore dell'attributo.
+     */
+    double getValue(int exampleIndex, int attribute) {
+        return data[exampleIndex * numberOfAttributes + attribute];
+    }
+
+    /**
+     * Restituisce il numero di attributi di ogni esempio.
+     *
+     * @return il numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return this.numberOfAttributes;
+    }
+
+    /**
+     * Calcola la distanza euclidea tra due esempi del dataset leggendo direttamente
+     * dal vettore dei valori, senza creare oggetti {@link Example}.
+     *
+     * @param i l'indice del primo esempio.
+     * @param j l'indice del secondo esempio.
+     * @return la distanza tra i due esempi.
+     */
+    public double distance(int i, int j) {
+        return Example.distance(data, i * numberOfAttributes, data, j * numberOfAttributes, numberOfAttributes);
+    }
+
+    /**
+     * Calcola il prodotto scalare tra due esempi del dataset.
+     *
+     * @param i l'indice del primo esempio.
+     * @param j l'indice del secondo esempio.
+     * @return il prodotto scalare tra i due esempi.
+     */
+    double dot(int i, int j) {
+        return Example.dot(data, i * numberOfAttributes, data, j * numberOfAttributes, numberOfAttributes);
+    }
+
+    /**
+     * Calcola il checksum CRC32 dei valori degli esempi, usato per riconoscere le
+     * matrici delle distanze già calcolate sullo stesso dataset.
+     *
+     * @return il checksum dei valori.
+     */
+    long checksum() {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (double value : data) {
+            if (!buffer.hasRemaining()) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+            buffer.putDouble(value);
+        }
+        buffer.flip();
+        crc.update(buffer);
+        return (long) numberOfExamples << 32 ^ crc.getValue();
+    }
+
+    /**
+     * Stima la memoria occupata nello heap dagli esempi, dai pesi e dalla matrice delle
+     * distanze, se è già stata calcolata. Le matrici su file non occupano heap.
+     *
+     * @return la memoria occupata, in byte.
+     */
+    long memorySize() {
+        long bytes = 8L * data.length + (weights != null ? 4L * weights.length : 0);
+        DistanceMatrix matrix = distanceMatrix;
+        return matrix != null ? bytes + matrix.memorySize() : bytes;
+    }
+
+    /**
+     * Restituisce le distanze tra tutte le coppie di esempi in forma condensata.
+     * La matrice viene calcolata in parallelo alla prima richiesta e poi riutilizzata
+     * da tutte le richieste successive, anche da thread diversi.
+     * Con la proprietà di sistema {@code hclus.distance.norms=true} le distanze sono
+     * calcolate come ||a||^2 + ||b||^2 - 2 a·b, più veloce ma meno preciso.
+     * <p>
+     * Se la matrice non entra nello heap, oppure se è impostata la proprietà di sistema
+     * {@code hclus.distance.dir}, la matrice è memorizzata in un file mappato in memoria
+     * nella cartella indicata da tale proprietà, o nella cartella temporanea di sistema;
+     * il file viene riutilizzato dalle esecuzioni successive sugli stessi dati.
+     * La matrice su file è sempre in double; le matrici nello heap sono memorizzate con
+     * la precisione del dataset, vedi {@link #withDistancePrecision(DistancePrecision)}.
+     *
+     * @return la matrice condensata delle distanze tra gli esempi.
+     * @throws UncheckedIOException se il file della matrice non può essere letto o scritto.
+     */
+    public DistanceMatrix getDistanceMatrix() {
+        DistanceMatrix matrix = distanceMatrix;
+        if (matrix == null) {
+            synchronized (this) {
+                matrix = distanceMatrix;
+                if (matrix == null) {
+                    boolean normExpansion = Boolean.getBoolean("hclus.distance.norms");
+                    String directory = System.getProperty("hclus.distance.dir");
+                    if (directory != null || MappedDistanceMatrix.exceedsHeap(numberOfExamples)) {
+                        matrix = openMappedDistanceMatrix(directory, normExpansion);
+                    } else if (precision == DistancePrecision.FLOAT) {
+                        matrix = new FloatDistanceMatrix(this, normExpansion);
+                    } else if (precision == DistancePrecision.QUANTIZED_16) {
+                        matrix = new QuantizedDistanceMatrix(this, normExpansion);
+                    } else {
+                        matrix = new CondensedDistanceMatrix(this, normExpansion);
+                    }
+                    distanceMatrix = matrix;
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Restituisce la matrice delle distanze tra gli esempi solo se è già stata calcolata,
+     * senza calcolarla.
+     *
+     * @return la matrice delle distanze, oppure null se non è ancora stata calcolata.
+     */
+    public DistanceMatrix getComputedDistanceMatrix() {
+        return distanceMatrix;
+    }
+
+    /**
+     * Destinazione delle distanze calcolate da {@link #computeDistances(DistanceSink)}.
+     * Viene chiamata da più thread, ma mai due volte per la stessa coppia.
+     */
+    public interface DistanceSink {
+        /**
+         * Riceve la distanza tra gli esempi i e j.
+         *
+         * @param i        l'indice del primo esempio.
+         * @param j        l'indice del secondo esempio, maggiore di i.
+         * @param distance la distanza tra i due esempi.
+         */
+        void put(int i, int j, double distance);
+    }
+
+    /**
+     * Calcola in parallelo le distanze tra tutte le coppie di esempi, come
+     * {@link #getDistanceMatrix()}, e le consegna a una destinazione senza memorizzarle
+     * nel dataset.
+     *
+     * @param sink la destinazione delle distanze.
+     */
+    public void computeDistances(DistanceSink sink) {
+        TiledDistanceComputation.compute(this, Boolean.getBoolean("hclus.distance.norms"), sink::put);
+    }
+
+    /**
+     * Apre la matrice delle distanze memorizzata su file, calcolandola se il file non
+     * esiste o appartiene a dati diversi.
+     *
+     * @param directory     la cartella dei file delle distanze, oppure null per la cartella temporanea.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme.
+     * @return la matrice delle distanze mappata in memoria.
+     * @throws UncheckedIOException se il file non può essere letto o scritto.
+     */
+    private DistanceMatrix openMappedDistanceMatrix(String directory, boolean normExpansion) {
+        Path folder = Paths.get(directory != null ? directory : System.getProperty("java.io.tmpdir"));
+        String name = tableName.replaceAll("[^A-Za-z0-9_.-]", "_")
+                + "-" + Long.toHexString(checksum()) + (normExpansion ? "-norms" : "") + ".dist";
+        try {
+            return MappedDistanceMatrix.open(this, folder.resolve(name), normExpansion);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile memorizzare le distanze in " + folder, e);
+        }
     }
 
     /**
@@ -97,14 +634,15 @@ public class Data {
 
      */
     public double[][] distance() {
-        int numExamples = data.size();
+        int numExamples = numberOfExamples;
         double[][] distances = new double[numExamples][numExamples];
+        DistanceMatrix matrix = getDistanceMatrix();
 
-        // Calcola e salva le distanze tra ogni coppia di esempi.
+        // Copia le distanze tra ogni coppia di esempi.
         for (int i = 0; i < numExamples; i++) {
 
             for (int j = i + 1; j < numExamples; j++) {
-                distances[i][j] = this.data.get(i).distance(this.data.get(j));
+                distances[i][j] = matrix.get(i, j);
             }
         }
 
@@ -123,11 +661,12 @@ public class Data {
     public String toString() {
 
         StringBuilder sb = new StringBuilder();
-        Iterator<Example> iterator = data.iterator();
-        int index = 0;
-        while (iterator.hasNext()) {
-            sb.append("Example ").append(index).append(": ").append(iterator.next().toString()).append("\n");
-            index = index + 1;
+        for (int index = 0; index < numberOfExamples; index++) {
+            sb.append("Example ").append(index).append(": ").append(getExample(index).toString());
+            if (weights != null) {
+                sb.append(" x").append(weights[index]);
+            }
+            sb.append("\n");
         }
         return sb.toString();
 
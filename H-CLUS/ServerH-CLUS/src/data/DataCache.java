@@ -0,0 +1,430 @@
+package data;
+
+import database.DatabaseConnectionException;
+import database.DbAccess;
+import database.TableLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * La classe DataCache condivide tra tutti i thread del server i dataset letti dal
+ * database, indicizzati per nome della tabella e modalità di lettura.
+ * I dataset non vengono modificati dopo la lettura, quindi lo stesso oggetto {@link Data},
+ * con la sua matrice delle distanze calcolata alla prima richiesta, è usato da tutti i
+ * client che lavorano sulla stessa tabella.
+ * <p>
+ * La cache:
+ * <ul>
+ *     <li>legge ogni tabella una sola volta anche se più thread la richiedono insieme: gli
+ *     altri attendono la lettura in corso;</li>
+ *     <li>conta i riferimenti a ogni dataset, che sono rilasciati chiudendo l'{@link Handle}
+ *     ottenuto con {@link #acquire}: i dataset in uso non vengono mai rimossi;</li>
+ *     <li>rimuove i dataset non in uso usati meno di recente quando la loro memoria stimata
+ *     supera il limite, proprietà di sistema {@code hclus.cache.maxBytes}, o il numero di
+ *     dataset supera {@code hclus.cache.maxEntries};</li>
+ *     <li>confronta l'impronta corrente della tabella con quella registrata alla lettura e,
+ *     se la tabella è cambiata, la legge di nuovo. L'impronta di una tabella è letta al più
+ *     una volta ogni {@code hclus.cache.validationTtl} millisecondi, 5000 per
+ *     impostazione predefinita, quindi una modifica può essere vista con questo ritardo.
+ *     La proprietà di sistema {@code hclus.cache.validation} sceglie l'impronta:
+ *     {@code count}, il valore predefinito, usa il numero di righe, {@code checksum} il
+ *     risultato di {@code CHECKSUM TABLE} e {@code none} disattiva il controllo;</li>
+ *     <li>se è impostata la proprietà di sistema {@code hclus.data.snapshotDir}, conserva
+ *     in quella cartella una {@link DataSnapshot} di ogni tabella letta, con l'impronta
+ *     della tabella: dopo un riavvio del server la tabella viene letta dalla copia, senza
+ *     interrogare il database, finché l'impronta e le colonne non cambiano. I dataset
+ *     riassunti con {@link Data#preCluster(String, int)} non hanno una copia, perché la
+ *     copia non conserva i micro-cluster.</li>
+ * </ul>
+ */
+public class DataCache {
+
+    /**
+     * Cache condivisa dal server.
+     */
+    private static final DataCache INSTANCE = new DataCache(
+            Long.getLong("hclus.cache.maxBytes", Runtime.getRuntime().maxMemory() / 4),
+            Integer.getInteger("hclus.cache.maxEntries", 16),
+            System.getProperty("hclus.cache.validation", "count"),
+            Long.getLong("hclus.cache.validationTtl", 5000L),
+            System.getProperty("hclus.data.snapshotDir"));
+
+    /**
+     * Riferimento a un dataset della cache, da chiudere quando il dataset non serve più.
+     */
+    public class Handle implements AutoCloseable {
+        private final Entry entry;
+        private final Data data;
+        private boolean closed = false;
+
+        private Handle(Entry entry, Data data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        /**
+         * Restituisce il dataset.
+         *
+         * @return il dataset condiviso, da non modificare.
+         */
+        public Data getData() {
+            return data;
+        }
+
+        /**
+         * Rilascia il riferimento al dataset. Le chiamate successive non hanno effetto.
+         */
+        @Override
+        public void close() {
+            synchronized (DataCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(entry);
+        }
+    }
+
+    /**
+     * Dataset della cache, letto o in lettura, con il numero di riferimenti.
+     */
+    private static class Entry {
+        private final String tableName;
+        private final CompletableFuture<Data> data = new CompletableFuture<>();
+        private long fingerprint; // impronta della tabella prima della lettura
+        private volatile long validatedAt; // istante dell'ultimo controllo dell'impronta, secondo System.nanoTime()
+        private int references;
+
+        private Entry(String tableName) {
+            this.tableName = tableName;
+        }
+    }
+
+    private final long maxBytes;
+    private final int maxEntries;
+    private final String validation;
+    private final long validationTtl; // millisecondi tra due controlli dell'impronta di una tabella
+    private final Path snapshotDirectory; // cartella delle copie binarie, oppure null
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // in ordine di uso
+    private long hits;
+    private long misses;
+    private long reloads;
+    private long evictions;
+    private long snapshotLoads;
+
+    /**
+     * Costruttore che crea una cache vuota.
+     *
+     * @param maxBytes          la memoria massima stimata dei dataset non in uso, in byte.
+     * @param maxEntries        il numero massimo di dataset.
+     * @param validation        l'impronta usata per riconoscere le tabelle cambiate: count,
+     *                          checksum o none.
+     * @param validationTtl     il tempo minimo tra due controlli dell'impronta di una tabella,
+     *                          in millisecondi.
+     * @param snapshotDirectory la cartella delle copie binarie dei dataset, oppure null per
+     *                          non usarle.
+     * @throws IllegalArgumentException se la modalità di controllo non è valida o il tempo
+     *                                  tra i controlli è negativo.
+     */
+    DataCache(long maxBytes, int maxEntries, String validation, long validationTtl, String snapshotDirectory) {
+        if (!validation.equals("count") && !validation.equals("checksum") && !validation.equals("none")) {
+            throw new IllegalArgumentException("Controllo della cache non valido: " + validation);
+        }
+        if (validationTtl < 0) {
+            throw new IllegalArgumentException("Tempo tra i controlli della cache non valido: " + validationTtl);
+        }
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+        this.validation = validation;
+        this.validationTtl = Math.min(validationTtl, Long.MAX_VALUE / 2_000_000L);
+        this.snapshotDirectory = snapshotDirectory != null ? Paths.get(snapshotDirectory) : null;
+    }
+
+    /**
+     * Restituisce la cache condivisa dal server.
+     *
+     * @return la cache dei dataset.
+     */
+    public static DataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Restituisce il dataset di una tabella, leggendolo dal database se non è nella cache
+     * o se la tabella è cambiata dopo la lettura. I parametri di lettura sono quelli di
+     * {@link Data#Data(String, boolean)} e di {@link Data#preCluster(String, int)}.
+     *
+     * @param tableName          la tabella da leggere.
+     * @param collapseDuplicates true per raggruppare le righe identiche in esempi pesati.
+     * @param maxExamples        se positivo, il numero massimo di esempi del dataset riassunto
+     *                           con {@link Data#preCluster(String, int)}.
+     * @return il riferimento al dataset, da chiudere quando il dataset non serve più.
+     * @throws NoDataException se la tabella non può essere letta.
+     */
+    public Handle acquire(String tableName, boolean collapseDuplicates, int maxExamples) throws NoDataException {
+        String key = tableName + (maxExamples > 0 ? "|preCluster=" + maxExamples : "|collapse=" + collapseDuplicates);
+        while (true) {
+            Entry entry;
+            boolean loader = false;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(tableName);
+                    entries.put(key, entry);
+                    loader = true;
+                    misses++;
+                } else {
+                    hits++;
+                }
+                entry.references++;
+            }
+
+            if (loader) {
+                load(key, entry, collapseDuplicates, maxExamples);
+            }
+            Data data;
+            try {
+                data = entry.data.join();
+            } catch (CompletionException e) {
+                release(entry);
+                if (e.getCause() instanceof NoDataException) {
+                    throw (NoDataException) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+
+            // Un dataset già presente viene scartato se la tabella è cambiata
+            if (!loader && mustValidate(entry) && fingerprint(tableName) != entry.fingerprint) {
+                synchronized (this) {
+                    if (entries.get(key) == entry) {
+                        entries.remove(key);
+                        reloads++;
+                    }
+                }
+                release(entry);
+                continue;
+            }
+            evict();
+            return new Handle(entry, data);
+        }
+    }
+
+    /**
+     * Indica se l'impronta della tabella di una voce va controllata di nuovo: il controllo
+     * è ripetuto al più una volta ogni {@code validationTtl} millisecondi, così le
+     * richieste ravvicinate di più client non interrogano ciascuna il database.
+     *
+     * @param entry la voce.
+     * @return true se l'impronta va letta dal database.
+     */
+    private boolean mustValidate(Entry entry) {
+        if (validation.equals("none")) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - entry.validatedAt < validationTtl * 1_000_000L) {
+            return false;
+        }
+        entry.validatedAt = now;
+        return true;
+    }
+
+    /**
+     * Legge il dataset di una voce appena inserita e sblocca i thread che lo attendono.
+     * In caso di errore la voce viene rimossa, così la richiesta successiva riprova la lettura.
+     *
+     * @param key                la chiave della voce.
+     * @param entry              la voce da completare.
+     * @param collapseDuplicates true per raggruppare le righe identiche in esempi pesati.
+     * @param maxExamples        se positivo, il numero massimo di esempi del dataset riassunto.
+     */
+    private void load(String key, Entry entry, boolean collapseDuplicates, int maxExamples) {
+        try {
+            // L'impronta è letta prima dei dati: una modifica durante la lettura fa rileggere la tabella
+            entry.fingerprint = validation.equals("none") ? 0 : fingerprint(entry.tableName);
+            entry.validatedAt = System.nanoTime();
+            entry.data.complete(maxExamples > 0
+                    ? Data.preCluster(entry.tableName, maxExamples)
+                    : loadWithSnapshot(entry.tableName, collapseDuplicates, entry.fingerprint));
+        } catch (NoDataException | RuntimeException | Error e) {
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            entry.data.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Legge il dataset di una tabella dalla sua copia binaria, se è stata scritta dalla
+     * stessa versione della tabella e con le stesse colonne, altrimenti dal database,
+     * aggiornando la copia. Senza la proprietà {@code hclus.data.snapshotDir} il dataset
+     * è sempre letto dal database.
+     *
+     * @param tableName          la tabella da leggere.
+     * @param collapseDuplicates true per raggruppare le righe identiche in esempi pesati.
+     * @param fingerprint        l'impronta corrente della tabella.
+     * @return il dataset.
+     * @throws NoDataException se la tabella non può essere letta dal database.
+     */
+    private Data loadWithSnapshot(String tableName, boolean collapseDuplicates, long fingerprint)
+            throws NoDataException {
+        if (snapshotDirectory == null) {
+            return new Data(tableName, collapseDuplicates);
+        }
+        Path file = snapshotDirectory.resolve(tableName.replaceAll("[^A-Za-z0-9_.-]", "_")
+                + (collapseDuplicates ? "-collapsed" : "") + "-" + validation + ".snap");
+
+        if (Files.isRegularFile(file)) {
+            try {
+                DataSnapshot snapshot = DataSnapshot.open(file);
+                if (validation.equals("none") || fingerprint != -1 && snapshot.getTableVersion() == fingerprint
+                        && Arrays.equals(snapshot.getAttributeNames(), columnNames(tableName))) {
+                    Data data = snapshot.load();
+                    synchronized (this) {
+                        snapshotLoads++;
+                    }
+                    return data;
+                }
+            } catch (IOException e) {
+                System.out.println("Copia della tabella " + tableName + " non utilizzabile: " + e.getMessage());
+            }
+        }
+
+        Data data = new Data(tableName, collapseDuplicates);
+        if (fingerprint != -1 || validation.equals("none")) {
+            try {
+                DataSnapshot.write(data, file, fingerprint);
+            } catch (IOException e) {
+                System.out.println("Impossibile scrivere la copia della tabella " + tableName + ": " + e.getMessage());
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Legge i nomi delle colonne correnti di una tabella.
+     *
+     * @param tableName la tabella.
+     * @return i nomi delle colonne, oppure null se lo schema non può essere letto.
+     */
+    private static String[] columnNames(String tableName) {
+        try {
+            return new TableLoader(new DbAccess(), tableName).getColumnNames();
+        } catch (SQLException | DatabaseConnectionException | MissingNumberException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rilascia un riferimento a una voce e rimuove i dataset in eccesso.
+     *
+     * @param entry la voce.
+     */
+    private void release(Entry entry) {
+        synchronized (this) {
+            entry.references--;
+        }
+        evict();
+    }
+
+    /**
+     * Rimuove i dataset non in uso, dal meno usato di recente, finché la memoria stimata
+     * dei dataset non in uso e il numero di dataset rientrano nei limiti.
+     */
+    private synchronized void evict() {
+        // Il limite di memoria riguarda solo i dataset non in uso, che sono gli unici rimovibili
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.references == 0) {
+                bytes += memorySize(entry);
+            }
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while ((bytes > maxBytes || entries.size() > maxEntries) && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.references == 0 && entry.data.isDone()) {
+                bytes -= memorySize(entry);
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Stima la memoria occupata dal dataset di una voce.
+     *
+     * @param entry la voce.
+     * @return la memoria occupata, in byte, oppure 0 se il dataset non è ancora stato letto.
+     */
+    private static long memorySize(Entry entry) {
+        Data data = entry.data.getNow(null);
+        return data != null && !entry.data.isCompletedExceptionally() ? data.memorySize() : 0;
+    }
+
+    /**
+     * Rimuove dalla cache tutti i dataset di una tabella. I client che li stanno usando
+     * continuano a usarli fino al rilascio.
+     *
+     * @param tableName la tabella.
+     */
+    public synchronized void invalidate(String tableName) {
+        entries.values().removeIf(entry -> entry.tableName.equals(tableName) && entry.data.isDone());
+    }
+
+    /**
+     * Legge l'impronta corrente di una tabella, secondo la modalità di controllo della cache.
+     *
+     * @param tableName la tabella.
+     * @return il numero di righe o il checksum della tabella, oppure -1 se la tabella non
+     * può essere interrogata.
+     */
+    private long fingerprint(String tableName) {
+        String query = validation.equals("checksum")
+                ? "CHECKSUM TABLE " + TableLoader.quote(tableName)
+                : "SELECT COUNT(*) FROM " + TableLoader.quote(tableName);
+        try (Connection connection = new DbAccess().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            // CHECKSUM TABLE restituisce il nome della tabella e poi il checksum
+            int column = validation.equals("checksum") ? 2 : 1;
+            if (resultSet.next()) {
+                long value = resultSet.getLong(column);
+                return resultSet.wasNull() ? -1 : value;
+            }
+            return -1;
+        } catch (SQLException | DatabaseConnectionException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Restituisce una descrizione dello stato della cache.
+     *
+     * @return il numero di dataset, la memoria stimata e i contatori della cache.
+     */
+    @Override
+    public synchronized String toString() {
+        long bytes = 0;
+        for (Entry entry : entries.values()) {
+            bytes += memorySize(entry);
+        }
+        return String.format("dataset %d, memoria %.1f MB, richieste soddisfatte %d, letture %d "
+                        + "(da copia %d), tabelle cambiate %d, rimozioni %d",
+                entries.size(), bytes / 1048576.0, hits, misses, snapshotLoads, reloads, evictions);
+    }
+}
\ No newline at end of file
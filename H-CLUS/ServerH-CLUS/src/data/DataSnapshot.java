@@ -0,0 +1,370 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * La classe DataSnapshot legge e scrive una copia binaria di un dataset, memorizzata
+ * per colonne, che può essere ricaricata senza interrogare il database.
+ * <p>
+ * Il file, in little-endian, contiene:
+ * <ul>
+ *     <li>un'intestazione di {@link #HEADER_BYTES} byte con il numero di esempi e di
+ *     attributi, la presenza dei pesi, la versione della tabella indicata da chi scrive
+ *     il file e il checksum dei valori degli esempi;</li>
+ *     <li>lo schema: il nome della tabella e i nomi delle colonne, se noti;</li>
+ *     <li>a partire da una posizione multipla di {@link #HEADER_BYTES}, i valori di ogni
+ *     attributo, uno dopo l'altro, come double;</li>
+ *     <li>se il dataset è pesato, i pesi degli esempi come int.</li>
+ * </ul>
+ * Le colonne sono lette mappando il file in memoria, a regioni di al più 1 GiB, e
+ * ogni valore è letto dalla regione mappata direttamente nella sua posizione del vettore
+ * degli esempi, senza buffer intermedi: il solo heap usato è quello del dataset. Come per {@link MappedDistanceMatrix}
+ * il file viene scritto con un nome temporaneo e rinominato solo quando è completo.
+ */
+public class DataSnapshot {
+
+    private static final long MAGIC = 0x48434C5553534E31L; // "HCLUSSN1"
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    private static final int REGION_DOUBLES = 1 << 27; // 1 GiB di double per regione
+    private static final int BUFFER_BYTES = 1 << 20; // buffer di scrittura
+    private static final int WEIGHTED = 1;
+
+    private final Path file;
+    private final int numberOfExamples;
+    private final int numberOfAttributes;
+    private final boolean weighted;
+    private final long tableVersion;
+    private final long checksum;
+    private final String tableName;
+    private final String[] attributeNames; // null se non noti
+    private final long dataOffset; // posizione della prima colonna
+
+    /**
+     * Costruttore che memorizza l'intestazione letta da un file.
+     *
+     * @param file               il file della copia.
+     * @param numberOfExamples   il numero di esempi.
+     * @param numberOfAttributes il numero di attributi.
+     * @param weighted           true se il file contiene i pesi degli esempi.
+     * @param tableVersion       la versione della tabella.
+     * @param checksum           il checksum dei valori degli esempi.
+     * @param tableName          il nome della tabella.
+     * @param attributeNames     i nomi delle colonne, oppure null.
+     * @param dataOffset         la posizione della prima colonna.
+     */
+    private DataSnapshot(Path file, int numberOfExamples, int numberOfAttributes, boolean weighted,
+                         long tableVersion, long checksum, String tableName, String[] attributeNames,
+                         long dataOffset) {
+        this.file = file;
+        this.numberOfExamples = numberOfExamples;
+        this.numberOfAttributes = numberOfAttributes;
+        this.weighted = weighted;
+        this.tableVersion = tableVersion;
+        this.checksum = checksum;
+        this.tableName = tableName;
+        this.attributeNames = attributeNames;
+        this.dataOffset = dataOffset;
+    }
+
+    /**
+     * Scrive la copia di un dataset, sostituendo il file se esiste già.
+     *
+     * @param data         il dataset da scrivere.
+     * @param file         il file da scrivere.
+     * @param tableVersion la versione della tabella da cui è stato letto il dataset, ad
+     *                     esempio il suo numero di righe, restituita da {@link #getTableVersion()}.
+     * @throws IOException se il file non può essere scritto.
+     */
+    public static void write(Data data, Path file, long tableVersion) throws IOException {
+        int n = data.getNumberOfExamples();
+        int m = data.getNumberOfAttributes();
+        ByteBuffer schema = schema(data.getTableName(), data.getAttributeNames());
+        long dataOffset = align(HEADER_BYTES + schema.remaining());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC)
+                .putInt(VERSION)
+                .putInt(data.isWeighted() ? WEIGHTED : 0)
+                .putInt(n)
+                .putInt(m)
+                .putLong(tableVersion)
+                .putLong(data.checksum())
+                .putInt(schema.remaining())
+                .putLong(dataOffset);
+        header.clear();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path partial = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                writeFully(channel, schema, HEADER_BYTES);
+
+                // Scrive gli attributi uno alla volta, leggendoli dal vettore per righe
+                double[] values = data.values();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                long position = dataOffset;
+                for (int j = 0; j < m; j++) {
+                    for (int i = 0; i < n; i++) {
+                        if (!buffer.hasRemaining()) {
+                            buffer.flip();
+                            position += writeFully(channel, buffer, position);
+                            buffer.clear();
+                        }
+                        buffer.putDouble(values[i * m + j]);
+                    }
+                }
+                for (int i = 0; i < n && data.isWeighted(); i++) {
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        position += writeFully(channel, buffer, position);
+                        buffer.clear();
+                    }
+                    buffer.putInt(data.getWeight(i));
+                }
+                buffer.flip();
+                writeFully(channel, buffer, position);
+
+                // L'intestazione è scritta per ultima, dopo i dati
+                channel.force(false);
+                writeFully(channel, header, 0);
+                channel.force(true);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * Legge l'intestazione e lo schema di una copia, senza leggere i dati.
+     *
+     * @param file il file da leggere.
+     * @return la copia, i cui dati possono essere letti con {@link #load()}.
+     * @throws IOException se il file non può essere letto o non è una copia valida.
+     */
+    public static DataSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getLong() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Il file " + file + " non è una copia di un dataset.");
+            }
+            boolean weighted = (header.getInt() & WEIGHTED) != 0;
+            int n = header.getInt();
+            int m = header.getInt();
+            long tableVersion = header.getLong();
+            long checksum = header.getLong();
+            int schemaBytes = header.getInt();
+            long dataOffset = header.getLong();
+            long length = dataOffset + (long) n * m * Double.BYTES + (weighted ? (long) n * Integer.BYTES : 0);
+            if (n < 0 || m <= 0 || (long) n * m > Integer.MAX_VALUE - 8 || schemaBytes < 0
+                    || dataOffset != align(HEADER_BYTES + schemaBytes) || channel.size() != length) {
+                throw new IOException("La copia " + file + " è incompleta o danneggiata.");
+            }
+
+            ByteBuffer schema = ByteBuffer.allocate(schemaBytes).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, schema, HEADER_BYTES);
+            schema.flip();
+            String tableName = readString(schema);
+            int names = schema.getInt();
+            String[] attributeNames = names > 0 ? new String[names] : null;
+            for (int j = 0; j < names; j++) {
+                attributeNames[j] = readString(schema);
+            }
+            return new DataSnapshot(file, n, m, weighted, tableVersion, checksum, tableName, attributeNames,
+                    dataOffset);
+        } catch (RuntimeException e) {
+            throw new IOException("La copia " + file + " è danneggiata.", e);
+        }
+    }
+
+    /**
+     * Legge i dati della copia e ricostruisce il dataset, verificandone il checksum.
+     *
+     * @return il dataset.
+     * @throws IOException se il file non può essere letto o i dati non corrispondono al checksum.
+     */
+    public Data load() throws IOException {
+        int n = numberOfExamples;
+        int m = numberOfAttributes;
+        double[] values = new double[n * m];
+        int[] weights = weighted ? new int[n] : null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int j = 0; j < m; j++) {
+                long columnOffset = dataOffset + (long) j * n * Double.BYTES;
+                for (int first = 0; first < n; first += REGION_DOUBLES) {
+                    int count = Math.min(REGION_DOUBLES, n - first);
+                    DoubleBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                                    columnOffset + (long) first * Double.BYTES, (long) count * Double.BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                    if (m == 1) {
+                        // Con un solo attributo la colonna coincide con il vettore per righe
+                        region.get(values, first, count);
+                    } else {
+                        for (int i = 0, k = first * m + j; i < count; i++, k += m) {
+                            values[k] = region.get(i);
+                        }
+                    }
+                }
+            }
+            if (weights != null) {
+                IntBuffer region = channel.map(FileChannel.MapMode.READ_ONLY,
+                                dataOffset + (long) n * m * Double.BYTES, (long) n * Integer.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+                region.get(weights);
+            }
+        }
+
+        Data data;
+        try {
+            data = weights != null ? new Data(values, m, weights) : new Data(values, m);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("La copia " + file + " è danneggiata.", e);
+        }
+        if (data.checksum() != checksum) {
+            throw new IOException("La copia " + file + " non corrisponde al suo checksum.");
+        }
+        data.setSource(tableName, attributeNames);
+        return data;
+    }
+
+    /**
+     * Restituisce il nome della tabella da cui è stato letto il dataset.
+     *
+     * @return il nome della tabella.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Restituisce i nomi delle colonne della tabella.
+     *
+     * @return i nomi delle colonne, oppure null se non erano noti alla scrittura.
+     */
+    public String[] getAttributeNames() {
+        return attributeNames != null ? attributeNames.clone() : null;
+    }
+
+    /**
+     * Restituisce il numero di esempi della copia.
+     *
+     * @return il numero di esempi.
+     */
+    public int getNumberOfExamples() {
+        return numberOfExamples;
+    }
+
+    /**
+     * Restituisce il numero di attributi della copia.
+     *
+     * @return il numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return numberOfAttributes;
+    }
+
+    /**
+     * Restituisce la versione della tabella indicata alla scrittura della copia.
+     *
+     * @return la versione della tabella.
+     */
+    public long getTableVersion() {
+        return tableVersion;
+    }
+
+    /**
+     * Costruisce il blocco dello schema: il nome della tabella, il numero di colonne e i
+     * loro nomi, ogni stringa preceduta dalla sua lunghezza in byte.
+     *
+     * @param tableName      il nome della tabella.
+     * @param attributeNames i nomi delle colonne, oppure null.
+     * @return il blocco, pronto per essere scritto.
+     */
+    private static ByteBuffer schema(String tableName, String[] attributeNames) {
+        byte[][] strings = new byte[1 + (attributeNames != null ? attributeNames.length : 0)][];
+        strings[0] = tableName.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES * 2 + strings[0].length;
+        for (int j = 1; j < strings.length; j++) {
+            strings[j] = attributeNames[j - 1].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + strings[j].length;
+        }
+        ByteBuffer schema = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        schema.putInt(strings[0].length).put(strings[0]).putInt(strings.length - 1);
+        for (int j = 1; j < strings.length; j++) {
+            schema.putInt(strings[j].length).put(strings[j]);
+        }
+        schema.flip();
+        return schema;
+    }
+
+    /**
+     * Legge una stringa preceduta dalla sua lunghezza in byte.
+     *
+     * @param buffer il buffer da cui leggere.
+     * @return la stringa.
+     */
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Arrotonda una posizione al multiplo successivo di {@link #HEADER_BYTES}.
+     *
+     * @param position la posizione.
+     * @return la posizione allineata.
+     */
+    private static long align(long position) {
+        return (position + HEADER_BYTES - 1) / HEADER_BYTES * HEADER_BYTES;
+    }
+
+    /**
+     * Scrive tutto il contenuto di un buffer a partire da una posizione del file.
+     *
+     * @param channel  il canale del file.
+     * @param buffer   il buffer da scrivere.
+     * @param position la posizione nel file.
+     * @return il numero di byte scritti.
+     * @throws IOException se il file non può essere scritto.
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Riempie un buffer leggendo il file a partire da una posizione.
+     *
+     * @param channel  il canale del file.
+     * @param buffer   il buffer da riempire.
+     * @param position la posizione nel file.
+     * @throws IOException se il file finisce prima che il buffer sia pieno.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Fine del file inattesa.");
+            }
+            position += read;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package data;
+
+/**
+ * Interfaccia del nucleo di calcolo della distanza euclidea (al quadrato) tra due
+ * esempi memorizzati in vettori di double.
+ * L'implementazione viene scelta una sola volta all'avvio con {@link #select()}:
+ * se il modulo {@code jdk.incubator.vector} è disponibile (la JVM è avviata con
+ * {@code --add-modules jdk.incubator.vector}) si usa la versione vettoriale SIMD,
+ * altrimenti quella scalare. La proprietà di sistema {@code hclus.kernel=scalar}
+ * forza la versione scalare.
+ */
+interface DistanceKernel {
+
+    /**
+     * Calcola la distanza euclidea (al quadrato) tra due sequenze di valori.
+     *
+     * @param a       il vettore che contiene il primo esempio.
+     * @param offsetA la posizione del primo valore del primo esempio.
+     * @param b       il vettore che contiene il secondo esempio.
+     * @param offsetB la posizione del primo valore del secondo esempio.
+     * @param length  il numero di valori da confrontare.
+     * @return la distanza tra i due esempi.
+     */
+    double distance(double[] a, int offsetA, double[] b, int offsetB, int length);
+
+    /**
+     * Calcola il prodotto scalare tra due sequenze di valori.
+     *
+     * @param a       il vettore che contiene il primo esempio.
+     * @param offsetA la posizione del primo valore del primo esempio.
+     * @param b       il vettore che contiene il secondo esempio.
+     * @param offsetB la posizione del primo valore del secondo esempio.
+     * @param length  il numero di valori da moltiplicare.
+     * @return il prodotto scalare tra i due esempi.
+     */
+    double dot(double[] a, int offsetA, double[] b, int offsetB, int length);
+
+    /**
+     * Sceglie l'implementazione del nucleo di calcolo disponibile sulla JVM corrente.
+     *
+     * @return il nucleo vettoriale se disponibile, altrimenti quello scalare.
+     */
+    static DistanceKernel select() {
+        if (!"scalar".equals(System.getProperty("hclus.kernel"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Caricata per nome, così senza il modulo la classe non viene mai collegata.
+                return (DistanceKernel) Class.forName("data.VectorDistanceKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.out.println("Nucleo vettoriale non disponibile, uso quello scalare: " + e);
+            }
+        }
+        return new ScalarDistanceKernel();
+    }
+}
\ No newline at end of file
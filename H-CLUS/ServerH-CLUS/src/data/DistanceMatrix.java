@@ -0,0 +1,30 @@
+package data;
+
+/**
+ * Interfaccia che rappresenta le distanze tra tutte le coppie di esempi di un dataset.
+ */
+public interface DistanceMatrix {
+
+    /**
+     * Restituisce il numero di esempi a cui si riferiscono le distanze.
+     *
+     * @return il numero di esempi.
+     */
+    int getNumberOfExamples();
+
+    /**
+     * Restituisce la distanza tra due esempi.
+     *
+     * @param i l'indice del primo esempio.
+     * @param j l'indice del secondo esempio.
+     * @return la distanza tra i due esempi, 0 se i e j coincidono.
+     */
+    double get(int i, int j);
+
+    /**
+     * Restituisce il numero di byte occupati dalle distanze nello heap.
+     *
+     * @return la memoria occupata nello heap, 0 se le distanze sono memorizzate altrove.
+     */
+    long memorySize();
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package data;
+
+/**
+ * Enumerazione delle precisioni con cui {@link Data} memorizza la matrice delle
+ * distanze tra gli esempi. Le precisioni ridotte occupano meno memoria, ma possono
+ * cambiare l'ordine delle fusioni tra coppie di cluster con distanze molto vicine.
+ */
+public enum DistancePrecision {
+    /**
+     * Distanze memorizzate come double, 8 byte per coppia.
+     */
+    DOUBLE,
+    /**
+     * Distanze memorizzate come float, 4 byte per coppia.
+     */
+    FLOAT,
+    /**
+     * Distanze quantizzate su 16 bit, 2 byte per coppia: ogni distanza è arrotondata
+     * al più vicino tra 65536 valori equidistanti tra 0 e un limite superiore della
+     * distanza massima.
+     */
+    QUANTIZED_16
+}
\ No newline at end of file
@@ -2,18 +2,25 @@ package data;
 
 import clustering.InvalidSizeException;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * La classe Example rappresenta un esempio che contiene una lista di valori reali.
+ * I valori sono memorizzati in un vettore di double, che può essere condiviso con
+ * l'oggetto {@link Data} da cui l'esempio è stato letto.
  * Implementa l'interfaccia Iterable per consentire l'iterazione sui valori,
  * e Serializable per permetterne la serializzazione.
  */
 public class Example implements Iterable<Double>, Serializable {
-    private List<Double> example; //lista di valori reali
+    private double[] values; // vettore che contiene i valori reali dell'esempio
+    private int offset; // posizione del primo valore dell'esempio nel vettore
+    private int length; // numero di valori dell'esempio
+    private boolean shared; // true se il vettore appartiene a un oggetto Data
 
     /**
      * Costruttore della classe Example.
@@ -21,8 +28,24 @@ public class Example implements Iterable<Double>, Serializable {
      */
     public Example() {
 
-        example = new LinkedList<>();
+        values = new double[4];
     }
+
+    /**
+     * Costruttore che crea un esempio come vista su una porzione di un vettore,
+     * senza copiarne i valori.
+     *
+     * @param values il vettore che contiene i valori.
+     * @param offset la posizione del primo valore dell'esempio.
+     * @param length il numero di valori dell'esempio.
+     */
+    Example(double[] values, int offset, int length) {
+        this.values = values;
+        this.offset = offset;
+        this.length = length;
+        this.shared = true;
+    }
+
     /**
      * Restituisce un iteratore per i valori dell'esempio.
      *
@@ -30,7 +53,20 @@ public class Example implements Iterable<Double>, Serializable {
      */
     public Iterator<Double> iterator() {
 
-        return example.iterator();
+        return new Iterator<Double>() {
+            private int i = 0;
+
+            public boolean hasNext() {
+                return i < length;
+            }
+
+            public Double next() {
+                if (i >= length) {
+                    throw new NoSuchElementException();
+                }
+                return values[offset + i++];
+            }
+        };
     }
     /**
      * Aggiunge un valore all'esempio.
@@ -39,7 +75,15 @@ public class Example implements Iterable<Double>, Serializable {
      */
     public void add(Double v) {
 
-        example.add(v);
+        if (shared || offset + length == values.length) {
+            // copia i valori in un nuovo vettore, senza modificare quello condiviso
+            double[] copy = new double[Math.max(4, length * 2)];
+            System.arraycopy(values, offset, copy, 0, length);
+            values = copy;
+            offset = 0;
+            shared = false;
+        }
+        values[offset + length++] = v;
     }
 
     /**
@@ -50,7 +94,31 @@ public class Example implements Iterable<Double>, Serializable {
      */
     Double get(int index) {
 
-        return example.get(index);
+        return getValue(index);
+    }
+
+    /**
+     * Restituisce il valore presente in una data posizione nell'esempio, senza
+     * conversione in oggetto Double.
+     *
+     * @param index la posizione del valore da restituire.
+     * @return il valore presente nella posizione specificata.
+     * @throws IndexOutOfBoundsException se la posizione non è valida.
+     */
+    public double getValue(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Indice " + index + " non valido per un esempio di dimensione " + length);
+        }
+        return values[offset + index];
+    }
+
+    /**
+     * Restituisce il numero di valori dell'esempio.
+     *
+     * @return la dimensione dell'esempio.
+     */
+    public int getSize() {
+        return length;
     }
 
     /**
@@ -64,18 +132,58 @@ public class Example implements Iterable<Double>, Serializable {
 
     public double distance(Example newE) {
 
-        double tot = 0.0;
+        return distance(this.values, this.offset, newE.values, newE.offset, Math.min(this.length, newE.length));
 
-        Iterator<Double> it1 = this.iterator();
-        Iterator<Double> it2 = newE.iterator();
+    }
 
-        while (it1.hasNext() && it2.hasNext()) {
-            double differenza = it1.next() - it2.next();
+    /**
+     * Nucleo di calcolo della distanza, scelto all'avvio tra quello vettoriale e quello scalare.
+     */
+    private static final DistanceKernel KERNEL = DistanceKernel.select();
 
-            tot += differenza * differenza;
-        }
-        return tot;
+    /**
+     * Calcola la distanza euclidea (al quadrato) tra due sequenze di valori memorizzate
+     * in vettori di double.
+     *
+     * @param a       il vettore che contiene il primo esempio.
+     * @param offsetA la posizione del primo valore del primo esempio.
+     * @param b       il vettore che contiene il secondo esempio.
+     * @param offsetB la posizione del primo valore del secondo esempio.
+     * @param length  il numero di valori da confrontare.
+     * @return la distanza tra i due esempi.
+     */
+    static double distance(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        return KERNEL.distance(a, offsetA, b, offsetB, length);
+    }
+
+    /**
+     * Calcola il prodotto scalare tra due sequenze di valori memorizzate in vettori di double.
+     *
+     * @param a       il vettore che contiene il primo esempio.
+     * @param offsetA la posizione del primo valore del primo esempio.
+     * @param b       il vettore che contiene il secondo esempio.
+     * @param offsetB la posizione del primo valore del secondo esempio.
+     * @param length  il numero di valori da moltiplicare.
+     * @return il prodotto scalare tra i due esempi.
+     */
+    static double dot(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        return KERNEL.dot(a, offsetA, b, offsetB, length);
+    }
 
+    /**
+     * Serializza l'esempio scrivendo solo i propri valori, anche quando il vettore
+     * è condiviso con un oggetto {@link Data}.
+     *
+     * @param out lo stream su cui scrivere l'esempio.
+     * @throws IOException se si verifica un errore di I/O durante la scrittura.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (shared || offset != 0 || length != values.length) {
+            values = Arrays.copyOfRange(values, offset, offset + length);
+            offset = 0;
+            shared = false;
+        }
+        out.defaultWriteObject();
     }
 
     /**
@@ -86,9 +194,9 @@ public class Example implements Iterable<Double>, Serializable {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("[");
-        for (int i=0; i<this.example.size(); i++) {
-            sb.append(this.example.get(i));
-            if (i < this.example.size() - 1) {
+        for (int i=0; i<this.length; i++) {
+            sb.append(this.values[offset + i]);
+            if (i < this.length - 1) {
                 sb.append(",");
             }
         }
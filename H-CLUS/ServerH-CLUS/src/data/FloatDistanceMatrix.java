@@ -0,0 +1,54 @@
+package data;
+
+/**
+ * La classe FloatDistanceMatrix memorizza le distanze tra gli esempi in forma
+ * condensata come float, con metà della memoria di {@link CondensedDistanceMatrix}.
+ * Le distanze sono calcolate in double e arrotondate al float più vicino.
+ */
+public class FloatDistanceMatrix implements DistanceMatrix {
+
+    private final int n; // numero di esempi
+    private final float[] distances; // distanze condensate, riga per riga
+
+    /**
+     * Costruttore che calcola in parallelo le distanze tra tutte le coppie di esempi.
+     *
+     * @param data          il dataset di cui calcolare le distanze.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme,
+     *                      come descritto in {@link TiledDistanceComputation#compute}.
+     */
+    FloatDistanceMatrix(Data data, boolean normExpansion) {
+        this.n = data.getNumberOfExamples();
+        this.distances = new float[(int) ((long) n * (n - 1) / 2)];
+        TiledDistanceComputation.compute(data, normExpansion, (i, j, d) -> distances[rowOffset(i) + j] = (float) d);
+    }
+
+    /**
+     * Restituisce lo scostamento della riga i nel vettore condensato: la distanza tra
+     * gli esempi i e j, con j maggiore di i, si trova in posizione rowOffset(i) + j.
+     *
+     * @param i l'indice della riga.
+     * @return lo scostamento della riga.
+     */
+    private int rowOffset(int i) {
+        return (int) ((long) i * n - (long) i * (i + 1) / 2 - i - 1);
+    }
+
+    @Override
+    public int getNumberOfExamples() {
+        return n;
+    }
+
+    @Override
+    public long memorySize() {
+        return 4L * distances.length;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        return i < j ? distances[rowOffset(i) + j] : distances[rowOffset(j) + i];
+    }
+}
\ No newline at end of file
@@ -0,0 +1,475 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * La classe KdTree è un indice spaziale sugli esempi di un {@link Data} che risponde
+ * alle interrogazioni di vicino più prossimo e di raggio senza confrontare il punto
+ * con tutti gli esempi.
+ * <p>
+ * L'albero è costruito in blocco: ogni nodo divide i suoi esempi a metà, sulla
+ * mediana dell'attributo con l'intervallo più ampio, finché i nodi non contengono al
+ * più {@link #LEAF_SIZE} esempi. I due sottoalberi di un nodo sono costruiti in
+ * parallelo. Ogni nodo memorizza il rettangolo che contiene i suoi esempi, usato per
+ * scartare i nodi più lontani del miglior risultato trovato.
+ * Le distanze sono euclidee al quadrato, come in {@link Data#distance(int, int)}.
+ * L'indice è efficace con pochi attributi, indicativamente fino a
+ * {@link #MAX_EFFECTIVE_DIMENSIONS}; con molti attributi le interrogazioni visitano
+ * quasi tutti i nodi.
+ */
+public class KdTree {
+
+    /**
+     * Numero massimo di esempi in una foglia.
+     */
+    public static final int LEAF_SIZE = 16;
+    /**
+     * Numero di attributi oltre il quale l'indice non è più vantaggioso rispetto al
+     * confronto con tutti gli esempi.
+     */
+    public static final int MAX_EFFECTIVE_DIMENSIONS = 10;
+    private static final int PARALLEL_THRESHOLD = 4096; // esempi sotto i quali la costruzione è sequenziale
+
+    /**
+     * Nodo dell'albero: contiene gli esempi dalla posizione start (inclusa) alla
+     * posizione end (esclusa) del vettore index.
+     */
+    private static class Node {
+        private final int start;
+        private final int end;
+        private final double[] min; // estremi inferiori del rettangolo degli esempi
+        private final double[] max; // estremi superiori del rettangolo degli esempi
+        private Node left; // null nelle foglie
+        private Node right;
+        private int label; // etichetta comune agli esempi del nodo, oppure -1
+
+        Node(int start, int end, int attributes) {
+            this.start = start;
+            this.end = end;
+            this.min = new double[attributes];
+            this.max = new double[attributes];
+        }
+    }
+
+    private final int n; // numero di esempi
+    private final int d; // numero di attributi
+    private final int[] index; // indici degli esempi, nell'ordine delle foglie
+    private final int[] position; // posizione di ogni esempio nell'ordine delle foglie
+    private final double[] points; // valori degli esempi, nell'ordine delle foglie
+    private final Node root;
+
+    /**
+     * Costruttore che costruisce l'albero sugli esempi di un dataset.
+     *
+     * @param data il dataset da indicizzare.
+     * @throws IllegalArgumentException se il dataset non contiene esempi.
+     */
+    public KdTree(Data data) {
+        this.n = data.getNumberOfExamples();
+        this.d = data.getNumberOfAttributes();
+        if (n == 0) {
+            throw new IllegalArgumentException("Il dataset non contiene esempi.");
+        }
+        this.index = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = i;
+        }
+        double[] values = new double[n * d];
+        for (int i = 0; i < n; i++) {
+            for (int a = 0; a < d; a++) {
+                values[i * d + a] = data.getValue(i, a);
+            }
+        }
+
+        this.root = new Node(0, n, d);
+        ForkJoinPool.commonPool().invoke(new BuildTask(root, values));
+
+        // Copia i valori nell'ordine delle foglie, così gli esempi di una foglia sono contigui
+        this.points = new double[n * d];
+        this.position = new int[n];
+        for (int p = 0; p < n; p++) {
+            System.arraycopy(values, index[p] * d, points, p * d, d);
+            position[index[p]] = p;
+        }
+    }
+
+    /**
+     * Attività che costruisce il sottoalbero di un nodo.
+     */
+    private class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Node node;
+        private final double[] values;
+
+        BuildTask(Node node, double[] values) {
+            this.node = node;
+            this.values = values;
+        }
+
+        @Override
+        protected void compute() {
+            // Calcola il rettangolo degli esempi del nodo
+            for (int a = 0; a < d; a++) {
+                node.min[a] = Double.POSITIVE_INFINITY;
+                node.max[a] = Double.NEGATIVE_INFINITY;
+            }
+            for (int p = node.start; p < node.end; p++) {
+                for (int a = 0; a < d; a++) {
+                    double value = values[index[p] * d + a];
+                    node.min[a] = Math.min(node.min[a], value);
+                    node.max[a] = Math.max(node.max[a], value);
+                }
+            }
+            if (node.end - node.start <= LEAF_SIZE) {
+                return;
+            }
+
+            // Divide sulla mediana dell'attributo con l'intervallo più ampio
+            int split = 0;
+            for (int a = 1; a < d; a++) {
+                if (node.max[a] - node.min[a] > node.max[split] - node.min[split]) {
+                    split = a;
+                }
+            }
+            if (node.max[split] == node.min[split]) {
+                return; // esempi tutti uguali: il nodo resta una foglia
+            }
+            int middle = (node.start + node.end) >>> 1;
+            select(values, node.start, node.end - 1, middle, split);
+
+            node.left = new Node(node.start, middle, d);
+            node.right = new Node(middle, node.end, d);
+            if (node.end - node.start >= PARALLEL_THRESHOLD) {
+                invokeAll(new BuildTask(node.left, values), new BuildTask(node.right, values));
+            } else {
+                new BuildTask(node.left, values).compute();
+                new BuildTask(node.right, values).compute();
+            }
+        }
+    }
+
+    /**
+     * Riordina le posizioni da lo a hi (incluse) del vettore index in modo che la
+     * posizione k contenga l'esempio che vi si troverebbe ordinando per l'attributo
+     * specificato, con gli esempi minori prima e quelli maggiori dopo.
+     *
+     * @param values    i valori degli esempi, memorizzati per righe.
+     * @param lo        la prima posizione.
+     * @param hi        l'ultima posizione.
+     * @param k         la posizione da determinare.
+     * @param attribute l'attributo di ordinamento.
+     */
+    private void select(double[] values, int lo, int hi, int k, int attribute) {
+        while (hi > lo) {
+            double pivot = values[index[(lo + hi) >>> 1] * d + attribute];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[index[i] * d + attribute] < pivot) {
+                    i++;
+                }
+                while (values[index[j] * d + attribute] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = index[i];
+                    index[i++] = index[j];
+                    index[j--] = tmp;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Calcola la distanza al quadrato tra un punto e l'esempio in una posizione delle foglie.
+     *
+     * @param point    i valori del punto.
+     * @param position la posizione dell'esempio nelle foglie.
+     * @return la distanza al quadrato.
+     */
+    private double distance(double[] point, int position) {
+        double sum = 0;
+        int offset = position * d;
+        for (int a = 0; a < d; a++) {
+            double diff = point[a] - points[offset + a];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Calcola la distanza al quadrato tra un punto e il rettangolo di un nodo.
+     *
+     * @param point i valori del punto.
+     * @param node  il nodo.
+     * @return la distanza al quadrato, 0 se il punto è nel rettangolo.
+     */
+    private double distance(double[] point, Node node) {
+        double sum = 0;
+        for (int a = 0; a < d; a++) {
+            double diff = point[a] < node.min[a] ? node.min[a] - point[a]
+                    : point[a] > node.max[a] ? point[a] - node.max[a] : 0;
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Restituisce i valori di un esempio indicizzato.
+     *
+     * @param example l'indice dell'esempio.
+     * @return una copia dei valori dell'esempio.
+     */
+    private double[] pointOf(int example) {
+        if (example < 0 || example >= n) {
+            throw new IndexOutOfBoundsException("Indice " + example + " non valido per " + n + " esempi");
+        }
+        double[] point = new double[d];
+        System.arraycopy(points, position[example] * d, point, 0, d);
+        return point;
+    }
+
+    /**
+     * Stato di una ricerca del vicino più prossimo.
+     */
+    private static class Nearest {
+        private int source = -1; // indice dell'esempio cercato, oppure -1 per un punto esterno
+        private int example = -1; // indice del vicino trovato
+        private double distance = Double.POSITIVE_INFINITY; // distanza al quadrato del vicino
+
+        /**
+         * Indica se la coppia (source, example) a distanza dist migliora il risultato:
+         * a parità di distanza vince la coppia con gli indici minori.
+         *
+         * @param dist    la distanza della coppia.
+         * @param source  l'esempio cercato, oppure -1.
+         * @param example il vicino candidato.
+         * @return true se la coppia è migliore del risultato attuale.
+         */
+        boolean improves(double dist, int source, int example) {
+            if (dist != distance || this.example < 0) {
+                return dist < distance;
+            }
+            int min = Math.min(source, example);
+            int bestMin = Math.min(this.source, this.example);
+            return min != bestMin ? min < bestMin : Math.max(source, example) < Math.max(this.source, this.example);
+        }
+    }
+
+    /**
+     * Restituisce l'esempio più vicino a un punto. A parità di distanza viene scelto
+     * l'esempio di indice minore.
+     *
+     * @param point i valori del punto.
+     * @return l'indice dell'esempio più vicino.
+     * @throws IllegalArgumentException se il numero di valori è diverso dal numero di attributi.
+     */
+    public int nearest(double[] point) {
+        checkPoint(point);
+        Nearest best = new Nearest();
+        nearest(root, point, -1, null, -1, best);
+        return best.example;
+    }
+
+    /**
+     * Restituisce l'esempio più vicino a un esempio indicizzato, escluso l'esempio
+     * stesso. A parità di distanza viene scelto l'esempio di indice minore.
+     *
+     * @param example l'indice dell'esempio.
+     * @return l'indice dell'esempio più vicino, oppure -1 se non ci sono altri esempi.
+     * @throws IndexOutOfBoundsException se l'indice non è valido.
+     */
+    public int nearest(int example) {
+        Nearest best = new Nearest();
+        nearest(root, pointOf(example), example, null, -1, best);
+        return best.example;
+    }
+
+    /**
+     * Cerca per ogni etichetta la coppia di esempi più vicina con un esempio con
+     * quell'etichetta e l'altro con un'etichetta diversa, ad esempio l'arco più corto
+     * che esce da una componente o da un cluster. A parità di distanza viene scelta la
+     * coppia con gli indici minori.
+     * Gli esempi della stessa etichetta sono cercati uno dopo l'altro, con la distanza
+     * migliore trovata fino a quel momento come limite, e i nodi i cui esempi hanno
+     * tutti la stessa etichetta vengono scartati senza visitarli. Le etichette diverse
+     * sono elaborate in parallelo; le etichette dei nodi sono memorizzate nell'albero,
+     * quindi non si possono eseguire più chiamate contemporanee.
+     *
+     * @param labels l'etichetta di ogni esempio, compresa tra 0 e il numero di esempi escluso.
+     * @return un vettore in cui, per ogni etichetta, l'esempio della coppia più vicina con
+     * quell'etichetta contiene l'indice dell'altro esempio della coppia; tutti gli altri
+     * elementi valgono -1.
+     * @throws IllegalArgumentException se il numero di etichette è diverso dal numero di
+     *                                  esempi o se un'etichetta non è valida.
+     */
+    public int[] nearestWithDifferentLabel(int[] labels) {
+        if (labels.length != n) {
+            throw new IllegalArgumentException("Serve un'etichetta per ogni esempio.");
+        }
+
+        // Raggruppa le posizioni degli esempi per etichetta, nell'ordine delle foglie
+        int[] first = new int[n + 1];
+        for (int label : labels) {
+            if (label < 0 || label >= n) {
+                throw new IllegalArgumentException("Etichetta " + label + " non valida per " + n + " esempi");
+            }
+            first[label + 1]++;
+        }
+        for (int l = 0; l < n; l++) {
+            first[l + 1] += first[l];
+        }
+        int[] members = new int[n];
+        int[] next = first.clone();
+        for (int p = 0; p < n; p++) {
+            members[next[labels[index[p]]]++] = p;
+        }
+
+        label(root, labels);
+        int[] result = new int[n];
+        Arrays.fill(result, -1);
+        IntStream.range(0, n).parallel().filter(l -> first[l + 1] > first[l]).forEach(l -> {
+            Nearest best = new Nearest();
+            for (int m = first[l]; m < first[l + 1]; m++) {
+                int example = index[members[m]];
+                nearest(root, pointOf(example), example, labels, l, best);
+            }
+            if (best.example >= 0) {
+                result[best.source] = best.example;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Calcola l'etichetta comune degli esempi di ogni nodo del sottoalbero.
+     *
+     * @param node   il nodo.
+     * @param labels l'etichetta di ogni esempio.
+     * @return l'etichetta comune degli esempi del nodo, oppure -1 se sono diverse.
+     */
+    private int label(Node node, int[] labels) {
+        if (node.left == null) {
+            int label = labels[index[node.start]];
+            for (int p = node.start + 1; p < node.end && label != -1; p++) {
+                if (labels[index[p]] != label) {
+                    label = -1;
+                }
+            }
+            node.label = label;
+        } else {
+            int left = label(node.left, labels);
+            int right = label(node.right, labels);
+            node.label = left == right ? left : -1;
+        }
+        return node.label;
+    }
+
+    /**
+     * Cerca nel sottoalbero di un nodo un esempio più vicino del migliore trovato.
+     *
+     * @param node     il nodo.
+     * @param point    il punto cercato.
+     * @param source   l'esempio cercato, che viene escluso, oppure -1.
+     * @param labels   le etichette degli esempi, oppure null per non filtrare.
+     * @param ownLabel l'etichetta degli esempi da escludere, se labels non è null.
+     * @param best     il miglior risultato trovato, aggiornato dalla ricerca.
+     */
+    private void nearest(Node node, double[] point, int source, int[] labels, int ownLabel, Nearest best) {
+        if (labels != null && node.label == ownLabel) {
+            return;
+        }
+        if (node.left == null) {
+            for (int p = node.start; p < node.end; p++) {
+                int example = index[p];
+                if (example == source || (labels != null && labels[example] == ownLabel)) {
+                    continue;
+                }
+                double dist = distance(point, p);
+                if (best.improves(dist, source, example)) {
+                    best.distance = dist;
+                    best.source = source;
+                    best.example = example;
+                }
+            }
+            return;
+        }
+
+        // Visita prima il figlio più vicino, poi l'altro solo se può contenere un esempio migliore
+        double leftDistance = distance(point, node.left);
+        double rightDistance = distance(point, node.right);
+        Node first = leftDistance <= rightDistance ? node.left : node.right;
+        Node second = first == node.left ? node.right : node.left;
+        double secondDistance = first == node.left ? rightDistance : leftDistance;
+        if (Math.min(leftDistance, rightDistance) <= best.distance) {
+            nearest(first, point, source, labels, ownLabel, best);
+        }
+        if (secondDistance <= best.distance) {
+            nearest(second, point, source, labels, ownLabel, best);
+        }
+    }
+
+    /**
+     * Restituisce gli esempi che distano da un punto al più la distanza specificata,
+     * in ordine crescente di indice.
+     *
+     * @param point    i valori del punto.
+     * @param distance la distanza massima, euclidea al quadrato.
+     * @return gli indici degli esempi entro la distanza.
+     * @throws IllegalArgumentException se il numero di valori è diverso dal numero di attributi.
+     */
+    public int[] withinDistance(double[] point, double distance) {
+        checkPoint(point);
+        List<Integer> found = new ArrayList<>();
+        withinDistance(root, point, distance, found);
+        return found.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Aggiunge a una lista gli esempi del sottoalbero di un nodo entro la distanza specificata.
+     *
+     * @param node     il nodo.
+     * @param point    il punto cercato.
+     * @param distance la distanza massima.
+     * @param found    la lista a cui aggiungere gli esempi.
+     */
+    private void withinDistance(Node node, double[] point, double distance, List<Integer> found) {
+        if (distance(point, node) > distance) {
+            return;
+        }
+        if (node.left == null) {
+            for (int p = node.start; p < node.end; p++) {
+                if (distance(point, p) <= distance) {
+                    found.add(index[p]);
+                }
+            }
+            return;
+        }
+        withinDistance(node.left, point, distance, found);
+        withinDistance(node.right, point, distance, found);
+    }
+
+    /**
+     * Verifica che un punto abbia tanti valori quanti gli attributi degli esempi.
+     *
+     * @param point i valori del punto.
+     * @throws IllegalArgumentException se il numero di valori è diverso.
+     */
+    private void checkPoint(double[] point) {
+        if (point.length != d) {
+            throw new IllegalArgumentException("Il numero di valori è diverso dal numero di attributi.");
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,255 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * La classe MappedDistanceMatrix memorizza le distanze condensate in un file mappato
+ * in memoria, fuori dallo heap della JVM: è il sistema operativo a decidere quali
+ * pagine tenere in memoria, per cui la matrice può superare la dimensione dello heap.
+ * Il file è diviso in regioni di al più 1 GiB, perché un singolo MappedByteBuffer non
+ * può superare i 2 GiB.
+ * <p>
+ * Il file inizia con un'intestazione che contiene il numero di esempi, il numero di
+ * attributi, la modalità di calcolo e il checksum dei valori degli esempi: un file
+ * già esistente viene riutilizzato solo se l'intestazione corrisponde al dataset.
+ * Il file viene scritto con un nome temporaneo e rinominato solo quando è completo,
+ * quindi un calcolo interrotto non lascia file parziali.
+ */
+public class MappedDistanceMatrix implements DistanceMatrix {
+
+    private static final long MAGIC = 0x48434C5553444D31L; // "HCLUSDM1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int REGION_SHIFT = 27; // 2^27 double per regione, cioè 1 GiB
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    private final int n; // numero di esempi
+    private final MappedByteBuffer[] regions; // regioni del file con le distanze
+    private final boolean writable; // true se le distanze possono essere modificate
+
+    /**
+     * Costruttore che mappa le regioni del file.
+     *
+     * @param channel  il canale del file.
+     * @param n        il numero di esempi.
+     * @param writable true per mappare il file in lettura e scrittura.
+     * @throws IOException se il file non può essere mappato.
+     */
+    private MappedDistanceMatrix(FileChannel channel, int n, boolean writable) throws IOException {
+        this.n = n;
+        this.writable = writable;
+        long entries = (long) n * (n - 1) / 2;
+        this.regions = new MappedByteBuffer[(int) ((entries + REGION_MASK) >>> REGION_SHIFT)];
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        for (int r = 0; r < regions.length; r++) {
+            long first = (long) r << REGION_SHIFT;
+            long count = Math.min(REGION_MASK + 1, entries - first);
+            regions[r] = channel.map(mode, HEADER_BYTES + first * Double.BYTES, count * Double.BYTES);
+            regions[r].order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Indica se una matrice condensata di n esempi è troppo grande per essere tenuta
+     * nello heap: supera la dimensione massima di un vettore oppure metà della memoria
+     * disponibile per la JVM.
+     *
+     * @param n il numero di esempi.
+     * @return true se la matrice deve essere memorizzata fuori dallo heap.
+     */
+    public static boolean exceedsHeap(int n) {
+        return exceedsHeap(n, Double.BYTES, 0);
+    }
+
+    /**
+     * Indica se una matrice condensata di n esempi, con il numero di byte per distanza
+     * specificato, è troppo grande per essere tenuta nello heap insieme ad altre matrici
+     * già presenti: supera la dimensione massima di un vettore oppure, sommata a
+     * reservedBytes, supera metà della memoria disponibile per la JVM.
+     *
+     * @param n             il numero di esempi.
+     * @param bytesPerEntry il numero di byte occupati da una distanza.
+     * @param reservedBytes i byte già occupati nello heap dalle altre matrici.
+     * @return true se la matrice deve essere memorizzata fuori dallo heap.
+     */
+    public static boolean exceedsHeap(int n, int bytesPerEntry, long reservedBytes) {
+        long entries = (long) n * (n - 1) / 2;
+        return entries > Integer.MAX_VALUE - 8 || entries * bytesPerEntry + reservedBytes > heapBudget();
+    }
+
+    /**
+     * Restituisce la memoria dello heap che le matrici delle distanze possono occupare
+     * complessivamente: metà della memoria disponibile per la JVM.
+     *
+     * @return la memoria disponibile per le matrici, in byte.
+     */
+    public static long heapBudget() {
+        return Runtime.getRuntime().maxMemory() / 2;
+    }
+
+    /**
+     * Restituisce la matrice delle distanze di un dataset memorizzata nel file
+     * specificato. Se il file esiste ed è stato calcolato dallo stesso dataset con la
+     * stessa modalità viene riutilizzato, altrimenti le distanze sono calcolate e il
+     * file viene sostituito.
+     *
+     * @param data          il dataset di cui calcolare le distanze.
+     * @param file          il file in cui memorizzare le distanze.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme,
+     *                      come descritto in {@link TiledDistanceComputation#compute}.
+     * @return la matrice delle distanze mappata in memoria.
+     * @throws IOException se il file non può essere letto o scritto.
+     */
+    public static MappedDistanceMatrix open(Data data, Path file, boolean normExpansion) throws IOException {
+        int n = data.getNumberOfExamples();
+        ByteBuffer header = header(n, data.getNumberOfAttributes(), normExpansion, data.checksum());
+        long length = HEADER_BYTES + (long) n * (n - 1) / 2 * Double.BYTES;
+
+        if (Files.isRegularFile(file) && Files.size(file) == length) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer existing = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(existing, 0);
+                existing.flip();
+                if (existing.equals(header)) {
+                    return new MappedDistanceMatrix(channel, n, false);
+                }
+            }
+        }
+
+        Path partial = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedDistanceMatrix matrix = new MappedDistanceMatrix(channel, n, true);
+                TiledDistanceComputation.compute(data, normExpansion, matrix::put);
+                for (MappedByteBuffer region : matrix.regions) {
+                    region.force();
+                }
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedDistanceMatrix(channel, n, false);
+        }
+    }
+
+    /**
+     * Crea una matrice modificabile di n esempi, con tutte le distanze a 0, in un file
+     * temporaneo che viene cancellato appena possibile.
+     *
+     * @param n         il numero di esempi.
+     * @param directory la cartella in cui creare il file temporaneo.
+     * @return la matrice delle distanze mappata in memoria.
+     * @throws IOException se il file non può essere creato.
+     */
+    public static MappedDistanceMatrix createTemporary(int n, Path directory) throws IOException {
+        Path file = Files.createTempFile(directory, "hclus-", ".dist");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new MappedDistanceMatrix(channel, n, true);
+        } finally {
+            // La mappatura resta valida anche dopo la cancellazione sui sistemi che lo consentono.
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Costruisce l'intestazione del file.
+     *
+     * @param n             il numero di esempi.
+     * @param attributes    il numero di attributi di ogni esempio.
+     * @param normExpansion la modalità di calcolo delle distanze.
+     * @param checksum      il checksum dei valori degli esempi.
+     * @return l'intestazione, pronta per essere letta.
+     */
+    private static ByteBuffer header(int n, int attributes, boolean normExpansion, long checksum) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putLong(MAGIC)
+                .putInt(VERSION)
+                .putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1)
+                .putInt(n)
+                .putInt(attributes)
+                .putInt(normExpansion ? 1 : 0)
+                .putLong(checksum);
+        header.clear();
+        return header;
+    }
+
+    /**
+     * Restituisce la posizione della coppia (i, j), con i minore di j, nella sequenza
+     * condensata delle distanze.
+     *
+     * @param i l'indice del primo esempio.
+     * @param j l'indice del secondo esempio.
+     * @return la posizione della coppia.
+     */
+    private long index(int i, int j) {
+        return (long) i * n - (long) i * (i + 1) / 2 - i - 1 + j;
+    }
+
+    /**
+     * Scrive la distanza tra gli esempi i e j.
+     *
+     * @param i        l'indice del primo esempio.
+     * @param j        l'indice del secondo esempio, maggiore di i.
+     * @param distance la distanza da scrivere.
+     */
+    private void put(int i, int j, double distance) {
+        long k = index(i, j);
+        regions[(int) (k >>> REGION_SHIFT)].putDouble((int) (k & REGION_MASK) * Double.BYTES, distance);
+    }
+
+    /**
+     * Modifica la distanza tra due esempi di una matrice creata con
+     * {@link #createTemporary(int, Path)}.
+     *
+     * @param i        l'indice del primo esempio.
+     * @param j        l'indice del secondo esempio, diverso da i.
+     * @param distance la nuova distanza.
+     * @throws UnsupportedOperationException se la matrice è in sola lettura.
+     */
+    public void set(int i, int j, double distance) {
+        if (!writable) {
+            throw new UnsupportedOperationException("La matrice delle distanze è in sola lettura.");
+        }
+        put(Math.min(i, j), Math.max(i, j), distance);
+    }
+
+    @Override
+    public int getNumberOfExamples() {
+        return n;
+    }
+
+    /**
+     * Restituisce 0: le distanze sono nel file mappato, fuori dallo heap.
+     *
+     * @return 0.
+     */
+    @Override
+    public long memorySize() {
+        return 0;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        long k = i < j ? index(i, j) : index(j, i);
+        return regions[(int) (k >>> REGION_SHIFT)].getDouble((int) (k & REGION_MASK) * Double.BYTES);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+package data;
+
+/**
+ * La classe QuantizedDistanceMatrix memorizza le distanze tra gli esempi in forma
+ * condensata su 16 bit, con un quarto della memoria di {@link CondensedDistanceMatrix}.
+ * La distanza d è memorizzata come round((d - offset) / scale), senza segno; l'offset
+ * è 0, perché le distanze non sono negative, e la scala è scelta in modo che il
+ * valore massimo 65535 corrisponda a un limite superiore della distanza tra due
+ * esempi, calcolato dagli intervalli dei valori di ogni attributo senza dover
+ * calcolare prima tutte le distanze.
+ */
+public class QuantizedDistanceMatrix implements DistanceMatrix {
+
+    private static final int LEVELS = 65535; // valore massimo memorizzabile
+
+    private final int n; // numero di esempi
+    private final short[] distances; // distanze quantizzate, riga per riga
+    private final double offset; // distanza corrispondente al valore 0
+    private final double scale; // ampiezza di un passo di quantizzazione
+
+    /**
+     * Costruttore che calcola in parallelo le distanze tra tutte le coppie di esempi
+     * e le quantizza.
+     *
+     * @param data          il dataset di cui calcolare le distanze.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme,
+     *                      come descritto in {@link TiledDistanceComputation#compute}.
+     */
+    QuantizedDistanceMatrix(Data data, boolean normExpansion) {
+        this.n = data.getNumberOfExamples();
+        this.distances = new short[(int) ((long) n * (n - 1) / 2)];
+        this.offset = 0.0;
+        this.scale = scaleOf(data);
+        TiledDistanceComputation.compute(data, normExpansion, (i, j, d) -> distances[rowOffset(i) + j] = quantize(d));
+    }
+
+    /**
+     * Restituisce l'ampiezza del passo di quantizzazione usata per le distanze di un
+     * dataset, in modo che il valore massimo corrisponda a un limite superiore della
+     * distanza tra due esempi.
+     *
+     * @param data il dataset.
+     * @return la scala della quantizzazione.
+     */
+    public static double scaleOf(Data data) {
+        double bound = upperBound(data);
+        return bound > 0 ? bound / LEVELS : 1.0;
+    }
+
+    /**
+     * Calcola un limite superiore della distanza euclidea al quadrato tra due esempi,
+     * come somma dei quadrati degli intervalli dei valori di ogni attributo.
+     *
+     * @param data il dataset.
+     * @return il limite superiore della distanza.
+     */
+    private static double upperBound(Data data) {
+        int attributes = data.getNumberOfAttributes();
+        double bound = 0.0;
+        for (int a = 0; a < attributes; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < data.getNumberOfExamples(); i++) {
+                double value = data.getValue(i, a);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            bound += (max - min) * (max - min);
+        }
+        return bound;
+    }
+
+    /**
+     * Converte una distanza nel valore quantizzato più vicino.
+     *
+     * @param distance la distanza da quantizzare.
+     * @return il valore quantizzato, da leggere senza segno.
+     */
+    private short quantize(double distance) {
+        long level = Math.round((distance - offset) / scale);
+        return (short) Math.max(0, Math.min(LEVELS, level));
+    }
+
+    /**
+     * Restituisce lo scostamento della riga i nel vettore condensato: la distanza tra
+     * gli esempi i e j, con j maggiore di i, si trova in posizione rowOffset(i) + j.
+     *
+     * @param i l'indice della riga.
+     * @return lo scostamento della riga.
+     */
+    private int rowOffset(int i) {
+        return (int) ((long) i * n - (long) i * (i + 1) / 2 - i - 1);
+    }
+
+    /**
+     * Restituisce l'ampiezza di un passo di quantizzazione, cioè l'errore massimo di
+     * arrotondamento moltiplicato per due.
+     *
+     * @return la scala della quantizzazione.
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    @Override
+    public int getNumberOfExamples() {
+        return n;
+    }
+
+    @Override
+    public long memorySize() {
+        return 2L * distances.length;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        if (i == j) {
+            return 0;
+        }
+        short level = i < j ? distances[rowOffset(i) + j] : distances[rowOffset(j) + i];
+        return offset + Short.toUnsignedInt(level) * scale;
+    }
+}
\ No newline at end of file
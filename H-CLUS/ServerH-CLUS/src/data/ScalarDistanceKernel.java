@@ -0,0 +1,28 @@
+package data;
+
+/**
+ * Nucleo di calcolo scalare della distanza euclidea (al quadrato), usato quando le
+ * istruzioni vettoriali non sono disponibili.
+ */
+class ScalarDistanceKernel implements DistanceKernel {
+
+    @Override
+    public double distance(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        double tot = 0.0;
+        for (int i = 0; i < length; i++) {
+            double differenza = a[offsetA + i] - b[offsetB + i];
+
+            tot += differenza * differenza;
+        }
+        return tot;
+    }
+
+    @Override
+    public double dot(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        double tot = 0.0;
+        for (int i = 0; i < length; i++) {
+            tot += a[offsetA + i] * b[offsetB + i];
+        }
+        return tot;
+    }
+}
\ No newline at end of file
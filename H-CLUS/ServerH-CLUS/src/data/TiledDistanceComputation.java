@@ -0,0 +1,97 @@
+package data;
+
+import java.util.stream.IntStream;
+
+/**
+ * La classe TiledDistanceComputation calcola in parallelo le distanze tra tutte le
+ * coppie (i, j) di esempi, con i minore di j, e le consegna a una destinazione.
+ * Gli esempi sono divisi in blocchi: le distanze sono calcolate blocco contro blocco,
+ * così gli esempi di entrambi i blocchi vengono letti dalla cache invece di rileggere
+ * tutto il dataset dalla memoria per ogni riga.
+ */
+final class TiledDistanceComputation {
+
+    /**
+     * Numero di valori double che un blocco di esempi può occupare, in modo che due
+     * blocchi restino insieme nella cache di primo o secondo livello.
+     */
+    private static final int TILE_VALUES = 4096;
+
+    /**
+     * Interfaccia della destinazione delle distanze calcolate. Viene chiamata da più
+     * thread, ma mai due volte per la stessa coppia.
+     */
+    interface PairSink {
+        /**
+         * Memorizza la distanza tra gli esempi i e j.
+         *
+         * @param i        l'indice del primo esempio.
+         * @param j        l'indice del secondo esempio, maggiore di i.
+         * @param distance la distanza tra i due esempi.
+         */
+        void put(int i, int j, double distance);
+    }
+
+    private TiledDistanceComputation() {
+    }
+
+    /**
+     * Calcola le distanze tra tutte le coppie di esempi.
+     * Se normExpansion è true la distanza tra a e b è calcolata come
+     * ||a||^2 + ||b||^2 - 2 a·b, con le norme calcolate una sola volta: è più veloce
+     * ma introduce errori di arrotondamento, per cui i valori possono differire
+     * leggermente da {@link Example#distance(Example)}; i valori negativi dovuti
+     * all'arrotondamento sono riportati a 0.
+     *
+     * @param data          il dataset di cui calcolare le distanze.
+     * @param normExpansion true per calcolare le distanze a partire dalle norme.
+     * @param sink          la destinazione delle distanze.
+     */
+    static void compute(Data data, boolean normExpansion, PairSink sink) {
+        int n = data.getNumberOfExamples();
+        int tile = Math.max(16, TILE_VALUES / Math.max(1, data.getNumberOfAttributes()));
+        int tiles = (n + tile - 1) / tile;
+        double[] norms = normExpansion ? new double[n] : null;
+        if (norms != null) {
+            IntStream.range(0, n).parallel().forEach(i -> norms[i] = data.dot(i, i));
+        }
+
+        // Il blocco di righe t contiene tiles-t blocchi di colonne: i blocchi di righe
+        // sono elaborati a coppie (t, tiles-1-t) in modo che ogni attività abbia circa
+        // lo stesso lavoro.
+        IntStream.range(0, (tiles + 1) / 2).parallel().forEach(t -> {
+            computeTileRow(data, norms, sink, t, tile, tiles);
+            if (tiles - 1 - t != t) {
+                computeTileRow(data, norms, sink, tiles - 1 - t, tile, tiles);
+            }
+        });
+    }
+
+    /**
+     * Calcola le distanze tra gli esempi del blocco di righe t e quelli dei blocchi
+     * successivi, compreso t stesso.
+     *
+     * @param data  il dataset di cui calcolare le distanze.
+     * @param norms le norme al quadrato degli esempi, oppure null per il calcolo diretto.
+     * @param sink  la destinazione delle distanze.
+     * @param t     l'indice del blocco di righe.
+     * @param tile  il numero di esempi per blocco.
+     * @param tiles il numero di blocchi.
+     */
+    private static void computeTileRow(Data data, double[] norms, PairSink sink, int t, int tile, int tiles) {
+        int n = data.getNumberOfExamples();
+        int rowStart = t * tile;
+        int rowEnd = Math.min(n, rowStart + tile);
+        for (int u = t; u < tiles; u++) {
+            int colStart = u * tile;
+            int colEnd = Math.min(n, colStart + tile);
+            for (int i = rowStart; i < rowEnd; i++) {
+                for (int j = Math.max(i + 1, colStart); j < colEnd; j++) {
+                    sink.put(i, j, norms == null
+                            ? data.distance(i, j)
+                            : Math.max(0.0, norms[i] + norms[j] - 2 * data.dot(i, j)));
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package data;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Nucleo di calcolo vettoriale della distanza euclidea (al quadrato), basato sulla
+ * Vector API del JDK: elabora più attributi per istruzione con la larghezza SIMD
+ * preferita dalla CPU e completa gli attributi rimanenti in modo scalare.
+ * Richiede che la JVM sia avviata con {@code --add-modules jdk.incubator.vector}.
+ */
+class VectorDistanceKernel implements DistanceKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double distance(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        int i = 0;
+        double tot = 0.0;
+        int bound = SPECIES.loopBound(length);
+        if (bound > 0) {
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            for (; i < bound; i += SPECIES.length()) {
+                DoubleVector differenza = DoubleVector.fromArray(SPECIES, a, offsetA + i)
+                        .sub(DoubleVector.fromArray(SPECIES, b, offsetB + i));
+                sum = differenza.fma(differenza, sum);
+            }
+            tot = sum.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            double differenza = a[offsetA + i] - b[offsetB + i];
+            tot += differenza * differenza;
+        }
+        return tot;
+    }
+
+    @Override
+    public double dot(double[] a, int offsetA, double[] b, int offsetB, int length) {
+        int i = 0;
+        double tot = 0.0;
+        int bound = SPECIES.loopBound(length);
+        if (bound > 0) {
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            for (; i < bound; i += SPECIES.length()) {
+                sum = DoubleVector.fromArray(SPECIES, a, offsetA + i)
+                        .fma(DoubleVector.fromArray(SPECIES, b, offsetB + i), sum);
+            }
+            tot = sum.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            tot += a[offsetA + i] * b[offsetB + i];
+        }
+        return tot;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,421 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe ConnectionPool mantiene un insieme limitato di connessioni al database,
+ * condiviso dai thread che lo utilizzano.
+ * Le connessioni restituite da {@link #getConnection()} sono involucri della connessione
+ * fisica: la chiusura dell'involucro restituisce la connessione al pool invece di
+ * chiuderla. Il pool:
+ * <ul>
+ *     <li>non apre più di maxSize connessioni; se sono tutte in uso, la richiesta attende
+ *     al più il tempo massimo di attesa;</li>
+ *     <li>riusa per prima la connessione restituita più di recente e, se è rimasta
+ *     inattiva per più di {@link #VALIDATION_INTERVAL} millisecondi, ne verifica la
+ *     validità prima di consegnarla;</li>
+ *     <li>chiude le connessioni inattive da più di maxIdle millisecondi e quelle aperte da
+ *     più di maxLifetime millisecondi, alla restituzione o con un controllo periodico;</li>
+ *     <li>registra il numero di richieste e il tempo di attesa per ottenere una connessione.</li>
+ * </ul>
+ */
+public class ConnectionPool {
+
+    /**
+     * Tempo di inattività, in millisecondi, oltre il quale una connessione viene
+     * verificata prima di essere riusata.
+     */
+    static final long VALIDATION_INTERVAL = 500;
+
+    /**
+     * Tempo massimo, in secondi, concesso alla verifica di una connessione.
+     */
+    private static final int VALIDATION_TIMEOUT = 2;
+
+    /**
+     * Interfaccia della funzione che apre una nuova connessione fisica.
+     */
+    interface ConnectionFactory {
+        /**
+         * Apre una nuova connessione al database.
+         *
+         * @return la connessione aperta.
+         * @throws DatabaseConnectionException se la connessione non può essere aperta.
+         */
+        Connection open() throws DatabaseConnectionException;
+    }
+
+    /**
+     * Connessione fisica del pool, con gli istanti di apertura e di ultima restituzione.
+     */
+    private static class PooledConnection {
+        private final Connection physical;
+        private final long createdAt = System.currentTimeMillis();
+        private long returnedAt = createdAt;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWait; // millisecondi
+    private final long maxIdle; // millisecondi
+    private final long maxLifetime; // millisecondi
+    private final Semaphore permits; // un permesso per ogni connessione che può essere in uso
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // connessioni libere, la più recente in testa
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong(); // nanosecondi
+    private final AtomicLong maxObservedWait = new AtomicLong(); // nanosecondi
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+
+    /**
+     * Costruttore che crea un pool vuoto e avvia il controllo periodico delle connessioni
+     * inattive e scadute.
+     *
+     * @param factory     la funzione che apre le connessioni fisiche.
+     * @param maxSize     il numero massimo di connessioni.
+     * @param maxWait     il tempo massimo di attesa di una connessione, in millisecondi.
+     * @param maxIdle     il tempo massimo di inattività di una connessione, in millisecondi.
+     * @param maxLifetime la durata massima di una connessione, in millisecondi.
+     * @throws IllegalArgumentException se un parametro non è positivo.
+     */
+    ConnectionPool(ConnectionFactory factory, int maxSize, long maxWait, long maxIdle, long maxLifetime) {
+        if (maxSize <= 0 || maxWait <= 0 || maxIdle <= 0 || maxLifetime <= 0) {
+            throw new IllegalArgumentException("I parametri del pool devono essere positivi.");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWait = maxWait;
+        this.maxIdle = maxIdle;
+        this.maxLifetime = maxLifetime;
+        this.permits = new Semaphore(maxSize, true);
+
+        ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "hclus-connection-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(maxIdle, maxLifetime) / 2);
+        housekeeper.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Restituisce una connessione del pool, aprendone una nuova se non ce ne sono di
+     * libere e il numero massimo non è stato raggiunto.
+     * La connessione va chiusa al termine dell'uso per restituirla al pool.
+     *
+     * @return la connessione.
+     * @throws DatabaseConnectionException se non si ottiene una connessione entro il tempo
+     *                                     massimo di attesa o se la connessione non può essere aperta.
+     */
+    public Connection getConnection() throws DatabaseConnectionException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new DatabaseConnectionException("Nessuna connessione disponibile entro " + maxWait + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseConnectionException("Attesa di una connessione interrotta.");
+        }
+
+        try {
+            PooledConnection connection = takeIdle();
+            if (connection == null) {
+                connection = new PooledConnection(factory.open());
+                opened.incrementAndGet();
+            }
+            record(System.nanoTime() - start);
+            return wrap(connection);
+        } catch (DatabaseConnectionException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Estrae la connessione libera più recente ancora utilizzabile, chiudendo quelle
+     * scadute o non più valide.
+     *
+     * @return la connessione, oppure null se non ci sono connessioni libere utilizzabili.
+     */
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection connection;
+            synchronized (idle) {
+                connection = idle.pollFirst();
+            }
+            if (connection == null) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            if (isExpired(connection, now)) {
+                discard(connection);
+            } else if (now - connection.returnedAt > VALIDATION_INTERVAL && !isValid(connection)) {
+                discard(connection);
+            } else {
+                return connection;
+            }
+        }
+    }
+
+    /**
+     * Restituisce al pool una connessione fisica, dopo averne annullato le transazioni in
+     * corso, oppure la chiude se è scaduta o non più utilizzabile.
+     *
+     * @param connection la connessione da restituire.
+     */
+    private void release(PooledConnection connection) {
+        try {
+            long now = System.currentTimeMillis();
+            if (connection.physical.isClosed() || now - connection.createdAt > maxLifetime) {
+                discard(connection);
+                return;
+            }
+            if (!connection.physical.getAutoCommit()) {
+                connection.physical.rollback();
+                connection.physical.setAutoCommit(true);
+            }
+            connection.returnedAt = now;
+            synchronized (idle) {
+                idle.addFirst(connection);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Chiude le connessioni libere inattive da troppo tempo o aperte da troppo tempo.
+     */
+    void evict() {
+        long now = System.currentTimeMillis();
+        Deque<PooledConnection> expired = new ArrayDeque<>();
+        synchronized (idle) {
+            for (Iterator<PooledConnection> it = idle.iterator(); it.hasNext(); ) {
+                PooledConnection connection = it.next();
+                if (isExpired(connection, now)) {
+                    it.remove();
+                    expired.add(connection);
+                }
+            }
+        }
+        for (PooledConnection connection : expired) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Indica se una connessione libera è rimasta inattiva troppo a lungo o è stata aperta
+     * da troppo tempo.
+     *
+     * @param connection la connessione.
+     * @param now        l'istante corrente, in millisecondi.
+     * @return true se la connessione va chiusa.
+     */
+    private boolean isExpired(PooledConnection connection, long now) {
+        return now - connection.returnedAt > maxIdle || now - connection.createdAt > maxLifetime;
+    }
+
+    /**
+     * Verifica che una connessione sia ancora utilizzabile.
+     *
+     * @param connection la connessione.
+     * @return true se la connessione risponde entro il tempo massimo di verifica.
+     */
+    private static boolean isValid(PooledConnection connection) {
+        try {
+            return connection.physical.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Chiude una connessione fisica, ignorando gli errori.
+     *
+     * @param connection la connessione da chiudere.
+     */
+    private void discard(PooledConnection connection) {
+        closed.incrementAndGet();
+        try {
+            connection.physical.close();
+        } catch (SQLException e) {
+            // la connessione non è più utilizzabile in ogni caso
+        }
+    }
+
+    /**
+     * Registra il tempo di attesa di una richiesta.
+     *
+     * @param wait il tempo di attesa, in nanosecondi.
+     */
+    private void record(long wait) {
+        requests.incrementAndGet();
+        totalWait.addAndGet(wait);
+        maxObservedWait.accumulateAndGet(wait, Math::max);
+    }
+
+    /**
+     * Crea l'involucro di una connessione fisica: la chiusura dell'involucro restituisce
+     * la connessione al pool e, dopo la chiusura, ogni altra operazione fallisce.
+     *
+     * @param connection la connessione fisica.
+     * @return l'involucro.
+     */
+    private Connection wrap(PooledConnection connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released = false;
+
+            @Override
+            public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!released) {
+                            released = true;
+                            release(connection);
+                        }
+                        return null;
+                    case "isClosed":
+                        return released || connection.physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Connessione del pool " + connection.physical;
+                    default:
+                        if (released) {
+                            throw new SQLException("La connessione è stata restituita al pool.");
+                        }
+                        try {
+                            return method.invoke(connection.physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni.
+     *
+     * @return il numero massimo di connessioni.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Restituisce il numero di connessioni in uso.
+     *
+     * @return il numero di connessioni consegnate e non ancora restituite.
+     */
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Restituisce il numero di connessioni libere.
+     *
+     * @return il numero di connessioni aperte e non in uso.
+     */
+    public int getIdleConnections() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Restituisce il numero di connessioni consegnate.
+     *
+     * @return il numero di richieste soddisfatte.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Restituisce il numero di richieste non soddisfatte entro il tempo massimo di attesa.
+     *
+     * @return il numero di richieste scadute.
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Restituisce il numero di connessioni fisiche aperte dalla creazione del pool.
+     *
+     * @return il numero di connessioni aperte.
+     */
+    public long getOpenedConnections() {
+        return opened.get();
+    }
+
+    /**
+     * Restituisce il numero di connessioni fisiche chiuse dal pool perché inattive,
+     * scadute o non valide.
+     *
+     * @return il numero di connessioni chiuse.
+     */
+    public long getClosedConnections() {
+        return closed.get();
+    }
+
+    /**
+     * Restituisce il tempo medio di attesa delle richieste soddisfatte.
+     *
+     * @return il tempo medio di attesa, in millisecondi.
+     */
+    public double getAverageWaitMillis() {
+        long count = requests.get();
+        return count == 0 ? 0 : totalWait.get() / 1e6 / count;
+    }
+
+    /**
+     * Restituisce il tempo massimo di attesa delle richieste soddisfatte.
+     *
+     * @return il tempo massimo di attesa, in millisecondi.
+     */
+    public double getMaxWaitMillis() {
+        return maxObservedWait.get() / 1e6;
+    }
+
+    /**
+     * Restituisce una descrizione dello stato del pool.
+     *
+     * @return le connessioni in uso e libere e i tempi di attesa.
+     */
+    @Override
+    public String toString() {
+        return String.format("connessioni in uso %d/%d, libere %d, aperte %d, chiuse %d, richieste %d, "
+                        + "scadute %d, attesa media %.2f ms, massima %.2f ms",
+                getActiveConnections(), maxSize, getIdleConnections(), getOpenedConnections(),
+                getClosedConnections(), getRequests(), getTimeouts(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
\ No newline at end of file
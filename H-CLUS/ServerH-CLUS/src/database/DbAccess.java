@@ -5,28 +5,53 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
- * Gestisce l'accesso al DB per la lettura dei dati di training
+ * Gestisce l'accesso al DB per la lettura dei dati di training.
+ * Le connessioni sono prese da un {@link ConnectionPool} condiviso da tutte le istanze,
+ * configurabile con le proprietà di sistema {@code hclus.db.pool.maxSize},
+ * {@code hclus.db.pool.maxWait}, {@code hclus.db.pool.maxIdle} e
+ * {@code hclus.db.pool.maxLifetime} (tempi in millisecondi): la chiusura di una
+ * connessione la restituisce al pool.
  * @author Map Tutor
  *
  */
 public class DbAccess {
 
-    private String DRIVER_CLASS_NAME = "com.mysql.cj.jdbc.Driver";
-    private  String DBMS = "jdbc:mysql";
-    private  String SERVER = "localhost";
-    private  String DATABASE = "MapDB";
-    private  int PORT = 3306;
-    private  String USER_ID = "MapUser";
-    private  String PASSWORD = "map";
+    private static final String DRIVER_CLASS_NAME = "com.mysql.cj.jdbc.Driver";
+    private static final String DBMS = "jdbc:mysql";
+    private static final String SERVER = "localhost";
+    private static final String DATABASE = "MapDB";
+    private static final int PORT = 3306;
+    private static final String USER_ID = "MapUser";
+    private static final String PASSWORD = "map";
+
+    /**
+     * Pool delle connessioni condiviso da tutti i thread del server.
+     */
+    private static final ConnectionPool POOL = new ConnectionPool(DbAccess::openConnection,
+            Integer.getInteger("hclus.db.pool.maxSize", 16),
+            Long.getLong("hclus.db.pool.maxWait", 30_000),
+            Long.getLong("hclus.db.pool.maxIdle", 300_000),
+            Long.getLong("hclus.db.pool.maxLifetime", 1_800_000));
 
     private Connection conn;
 
     /**
-     * Inizializza la connessione al database.
+     * Inizializza la connessione al database, prendendola dal pool.
      *
      * @throws DatabaseConnectionException Eccezione lanciata se la connessione al database fallisce.
      */
     public void initConnection() throws DatabaseConnectionException
+    {
+        conn = POOL.getConnection();
+    }
+
+    /**
+     * Apre una nuova connessione fisica al database.
+     *
+     * @return la connessione aperta.
+     * @throws DatabaseConnectionException Eccezione lanciata se la connessione al database fallisce.
+     */
+    private static Connection openConnection() throws DatabaseConnectionException
     {
         try {
             Class.forName(DRIVER_CLASS_NAME);
@@ -34,12 +59,14 @@ public class DbAccess {
             System.out.println("[!] Driver not found: " + e.getMessage());
             throw new DatabaseConnectionException(e.toString());
         }
+        // useCursorFetch consente la lettura a blocchi con le dimensioni di lettura positive.
         String connectionString = DBMS + "://" + SERVER + ":" + PORT + "/" + DATABASE
-                + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC";
+                + "?user=" + USER_ID + "&password=" + PASSWORD + "&serverTimezone=UTC"
+                + "&useCursorFetch=true";
 
 
         try {
-            conn = DriverManager.getConnection(connectionString);
+            return DriverManager.getConnection(connectionString);
         } catch(SQLException e) {
 
             throw new DatabaseConnectionException(e.toString());
@@ -47,7 +74,8 @@ public class DbAccess {
     }
 
     /**
-     * Restituisce la connessione al database.
+     * Restituisce una connessione al database presa dal pool, da chiudere al termine
+     * dell'uso.
      *
      * @return Connessione al database.
      * @throws DatabaseConnectionException Eccezione lanciata se la connessione al database fallisce.
@@ -58,7 +86,7 @@ public class DbAccess {
     }
 
     /**
-     * Chiude la connessione al database.
+     * Restituisce al pool l'ultima connessione ottenuta.
      *
      * @throws SQLException Eccezione lanciata se si verifica un errore durante la chiusura della connessione.
      */
@@ -66,4 +94,13 @@ public class DbAccess {
         conn.close();
     }
 
+    /**
+     * Restituisce il pool delle connessioni condiviso.
+     *
+     * @return il pool delle connessioni.
+     */
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,342 @@
+package database;
+
+import data.EmptySetException;
+import data.MissingNumberException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.Arrays;
+
+/**
+ * La classe TableLoader legge le righe di una tabella numerica del database.
+ * Lo schema della tabella viene letto e validato una sola volta, con {@link TableSchema},
+ * quando il loader viene creato: le query selezionano esplicitamente le colonne dello
+ * schema, quindi durante la lettura non servono altri accessi ai metadati.
+ * <p>
+ * Le righe sono trasmesse dal database a blocchi di dimensione configurabile con la
+ * proprietà di sistema {@code hclus.db.fetchSize}:
+ * <ul>
+ *     <li>{@link Integer#MIN_VALUE}, il valore predefinito: il driver MySQL trasmette le
+ *     righe una alla volta, senza caricare il result set in memoria;</li>
+ *     <li>un valore positivo: il server legge le righe con un cursore, a blocchi della
+ *     dimensione indicata;</li>
+ *     <li>0: il driver carica in memoria l'intero result set.</li>
+ * </ul>
+ * Al termine di ogni lettura il loader riporta il numero di righe lette al secondo.
+ */
+public class TableLoader {
+
+    /**
+     * Dimensione di lettura predefinita: trasmissione delle righe una alla volta.
+     */
+    public static final int DEFAULT_FETCH_SIZE = Integer.MIN_VALUE;
+
+    /**
+     * Capacità iniziale dei buffer delle colonne.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Interfaccia della destinazione delle righe lette da {@link #stream}.
+     */
+    public interface RowConsumer {
+        /**
+         * Riceve una riga. Il vettore viene riutilizzato per la riga successiva.
+         *
+         * @param row i valori della riga.
+         */
+        void accept(double[] row);
+    }
+
+    /**
+     * Le righe di una tabella lette in memoria da {@link #load(boolean)}.
+     */
+    public static class Rows {
+        private final double[] values; // valori delle righe, memorizzati per righe
+        private final int[] counts; // numero di righe di ogni gruppo, oppure null
+        private final int numberOfRows;
+
+        /**
+         * Costruttore che memorizza i buffer già ridotti al numero di righe lette.
+         *
+         * @param values       i valori delle righe, memorizzati per righe.
+         * @param counts       i conteggi, oppure null.
+         * @param numberOfRows il numero di righe lette.
+         */
+        private Rows(double[] values, int[] counts, int numberOfRows) {
+            this.values = values;
+            this.counts = counts;
+            this.numberOfRows = numberOfRows;
+        }
+
+        /**
+         * Restituisce il numero di righe lette.
+         *
+         * @return il numero di righe.
+         */
+        public int getNumberOfRows() {
+            return numberOfRows;
+        }
+
+        /**
+         * Restituisce i valori delle righe, senza copiarli: il valore della colonna j della
+         * riga i si trova in posizione i * numero di colonne + j.
+         *
+         * @return i valori delle righe.
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        /**
+         * Restituisce, per ogni riga letta con il raggruppamento delle righe identiche,
+         * il numero di righe della tabella che rappresenta.
+         *
+         * @return i conteggi, oppure null se le righe non sono state raggruppate.
+         */
+        public int[] getCounts() {
+            return counts;
+        }
+    }
+
+    private final DbAccess db;
+    private final String tableName;
+    private final String[] columnNames; // colonne dello schema
+    private final String quotedTable; // nome della tabella tra apici inversi
+    private final String columnList; // colonne dello schema tra apici inversi, separate da virgole
+    private final int numberOfColumns;
+    private final int keyIndex; // posizione della colonna chiave, oppure -1
+    private int fetchSize = Integer.getInteger("hclus.db.fetchSize", DEFAULT_FETCH_SIZE);
+    private double rowsPerSecond = Double.NaN; // velocità dell'ultima lettura
+
+    /**
+     * Costruttore che legge e valida lo schema della tabella.
+     *
+     * @param db        l'oggetto {@link DbAccess} utilizzato per connettersi al database.
+     * @param tableName la tabella da leggere.
+     * @throws SQLSyntaxErrorException     se la tabella non esiste nel database.
+     * @throws MissingNumberException      se la tabella contiene attributi non numerici.
+     * @throws SQLException                se si verifica un errore durante la lettura dello schema.
+     * @throws DatabaseConnectionException se non è possibile stabilire la connessione al database.
+     */
+    public TableLoader(DbAccess db, String tableName)
+            throws SQLException, DatabaseConnectionException, MissingNumberException {
+        TableSchema schema = new TableSchema(db, tableName);
+        if (schema.getNumberOfAttributes() == 0) {
+            throw new SQLSyntaxErrorException("La tabella '" + tableName + "' non esiste nel database.", "42S02");
+        }
+        StringBuilder columns = new StringBuilder();
+        this.columnNames = new String[schema.getNumberOfAttributes()];
+        for (int j = 0; j < schema.getNumberOfAttributes(); j++) {
+            TableSchema.Column column = schema.getColumn(j);
+            if (!column.isNumber()) {
+                throw new MissingNumberException("Attributo non numerico trovato: " + column);
+            }
+            columnNames[j] = column.getColumnName();
+            columns.append(j > 0 ? ", " : "").append(quote(column.getColumnName()));
+        }
+        this.db = db;
+        this.tableName = tableName;
+        this.quotedTable = quote(tableName);
+        this.columnList = columns.toString();
+        this.numberOfColumns = schema.getNumberOfAttributes();
+        this.keyIndex = schema.getKeyIndex();
+    }
+
+    /**
+     * Restituisce il numero di colonne della tabella.
+     *
+     * @return il numero di colonne.
+     */
+    public int getNumberOfColumns() {
+        return numberOfColumns;
+    }
+
+    /**
+     * Restituisce i nomi delle colonne della tabella, nell'ordine dello schema.
+     *
+     * @return i nomi delle colonne.
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    /**
+     * Restituisce la posizione della colonna che identifica le righe della tabella, come
+     * definita da {@link TableSchema#getKeyIndex()}.
+     *
+     * @return la posizione della colonna chiave, oppure -1 se la tabella non ne ha una.
+     */
+    public int getKeyIndex() {
+        return keyIndex;
+    }
+
+    /**
+     * Restituisce la clausola che ordina le righe in modo deterministico: per chiave, se
+     * la tabella ne ha una, altrimenti per i valori di tutte le colonne. Nel secondo caso
+     * l'ordine tra righe identiche non è definito, ma righe identiche sono indistinguibili.
+     *
+     * @return la clausola ORDER BY, preceduta da uno spazio.
+     */
+    public String orderClause() {
+        return " ORDER BY " + (keyIndex >= 0 ? quote(columnNames[keyIndex]) : columnList);
+    }
+
+    /**
+     * Imposta la dimensione di lettura delle query successive.
+     *
+     * @param fetchSize il numero di righe per blocco, 0 per la lettura completa o
+     *                  {@link Integer#MIN_VALUE} per la trasmissione riga per riga.
+     * @throws IllegalArgumentException se fetchSize è negativo e diverso da
+     *                                  {@link Integer#MIN_VALUE}.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0 && fetchSize != Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Dimensione di lettura non valida: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Restituisce il numero di righe al secondo dell'ultima lettura.
+     *
+     * @return le righe lette al secondo, oppure NaN se non è stata effettuata alcuna lettura.
+     */
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    /**
+     * Legge le righe della tabella una alla volta.
+     *
+     * @param suffix   il testo aggiunto alla query dopo il nome della tabella, ad esempio
+     *                 una clausola LIMIT, oppure la stringa vuota.
+     * @param consumer la destinazione delle righe.
+     * @return il numero di righe lette.
+     * @throws SQLException                se si verifica un errore durante la lettura.
+     * @throws DatabaseConnectionException se non è possibile stabilire la connessione al database.
+     */
+    public long stream(String suffix, RowConsumer consumer) throws SQLException, DatabaseConnectionException {
+        long start = System.nanoTime();
+        long rows = 0;
+        double[] row = new double[numberOfColumns];
+        try (Connection connection = db.getConnection();
+             PreparedStatement statement = prepare(connection, "SELECT " + columnList + " FROM " + quotedTable + suffix);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                for (int j = 0; j < numberOfColumns; j++) {
+                    row[j] = resultSet.getDouble(j + 1);
+                }
+                consumer.accept(row);
+                rows++;
+            }
+        }
+        report(rows, start);
+        return rows;
+    }
+
+    /**
+     * Legge in memoria tutte le righe della tabella, memorizzate per righe in un unico
+     * vettore di double che viene consegnato senza copie, una volta ridotto al numero di
+     * righe lette.
+     * Se collapseDuplicates è true ogni gruppo di righe identiche viene letto una sola
+     * volta, con {@code COUNT(*) ... GROUP BY} su tutte le colonne, e il numero di righe
+     * del gruppo è restituito da {@link Rows#getCounts()}.
+     *
+     * @param collapseDuplicates true per raggruppare le righe identiche.
+     * @return le righe lette.
+     * @throws EmptySetException           se la tabella è vuota.
+     * @throws SQLException                se si verifica un errore durante la lettura o se
+     *                                     la tabella contiene troppi valori.
+     * @throws DatabaseConnectionException se non è possibile stabilire la connessione al database.
+     */
+    public Rows load(boolean collapseDuplicates)
+            throws SQLException, DatabaseConnectionException, EmptySetException {
+        long start = System.nanoTime();
+        String query = collapseDuplicates
+                ? "SELECT " + columnList + ", COUNT(*) FROM " + quotedTable + " GROUP BY " + columnList
+                : "SELECT " + columnList + " FROM " + quotedTable;
+        long maxRows = (Integer.MAX_VALUE - 8) / numberOfColumns;
+        double[] values = new double[INITIAL_CAPACITY * numberOfColumns];
+        int[] counts = collapseDuplicates ? new int[INITIAL_CAPACITY] : null;
+        int rows = 0;
+        try (Connection connection = db.getConnection();
+             PreparedStatement statement = prepare(connection, query);
+             ResultSet resultSet = statement.executeQuery()) {
+            int size = 0;
+            while (resultSet.next()) {
+                if (rows == maxRows) {
+                    throw new SQLException("La tabella '" + tableName + "' contiene troppi valori.");
+                }
+                if (size == values.length) {
+                    int capacity = (int) Math.min((long) rows * 2, maxRows);
+                    values = Arrays.copyOf(values, capacity * numberOfColumns);
+                    if (counts != null) {
+                        counts = Arrays.copyOf(counts, capacity);
+                    }
+                }
+                for (int j = 1; j <= numberOfColumns; j++) {
+                    values[size++] = resultSet.getDouble(j);
+                }
+                if (counts != null) {
+                    counts[rows] = resultSet.getInt(numberOfColumns + 1);
+                }
+                rows++;
+            }
+        }
+        if (rows == 0) {
+            throw new EmptySetException("La tabella è vuota.");
+        }
+        report(rows, start);
+        if (values.length != rows * numberOfColumns) {
+            values = Arrays.copyOf(values, rows * numberOfColumns);
+        }
+        if (counts != null && counts.length != rows) {
+            counts = Arrays.copyOf(counts, rows);
+        }
+        return new Rows(values, counts, rows);
+    }
+
+    /**
+     * Racchiude un nome di tabella o di colonna tra apici inversi, raddoppiando quelli
+     * contenuti nel nome, così da poter usare anche nomi che coincidono con parole
+     * riservate di SQL.
+     *
+     * @param identifier il nome da racchiudere.
+     * @return il nome tra apici inversi.
+     */
+    public static String quote(String identifier) {
+        return "`" + identifier.replace("`", "``") + "`";
+    }
+
+    /**
+     * Prepara una query di sola lettura, in avanti, con la dimensione di lettura corrente.
+     *
+     * @param connection la connessione al database.
+     * @param query      la query da preparare.
+     * @return lo statement preparato.
+     * @throws SQLException se la query non può essere preparata.
+     */
+    private PreparedStatement prepare(Connection connection, String query) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(query,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    /**
+     * Registra e stampa la velocità di una lettura.
+     *
+     * @param rows  il numero di righe lette.
+     * @param start l'istante di inizio della lettura, in nanosecondi.
+     */
+    private void report(long rows, long start) {
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        rowsPerSecond = rows * 1e9 / elapsed;
+        System.out.printf("Lette %d righe dalla tabella %s in %d ms (%.0f righe/s)%n",
+                rows, tableName, elapsed / 1_000_000, rowsPerSecond);
+    }
+}
\ No newline at end of file
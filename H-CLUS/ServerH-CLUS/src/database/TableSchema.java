@@ -63,6 +63,7 @@ public class TableSchema {
         }
     }
     List<Column> tableSchema=new ArrayList<>();
+    private int keyIndex = -1; // posizione della colonna chiave, oppure -1
 
     /**
      * Costruisce uno schema di tabella utilizzando l'accesso al database specificato e il nome della tabella.
@@ -86,23 +87,65 @@ public class TableSchema {
         mapSQL_JAVATypes.put("LONG","number");
         mapSQL_JAVATypes.put("FLOAT","number");
         mapSQL_JAVATypes.put("DOUBLE","number");
-
-
-        // Ottiene la connessione al database e i metadati della tabella.
-        Connection con=db.getConnection();
-        DatabaseMetaData meta = con.getMetaData();
-        ResultSet res = meta.getColumns(null, null, tableName, null);
-
-        //itera sul risultato per ottenere informazioni sulle colonne.
-        while (res.next()) {
-
-            if(mapSQL_JAVATypes.containsKey(res.getString("TYPE_NAME")))
-                tableSchema.add(new Column(
-                        res.getString("COLUMN_NAME"),
-                        mapSQL_JAVATypes.get(res.getString("TYPE_NAME")))
-                );
+        // Nomi dei tipi numerici restituiti dal driver MySQL.
+        mapSQL_JAVATypes.put("TINYINT","number");
+        mapSQL_JAVATypes.put("SMALLINT","number");
+        mapSQL_JAVATypes.put("MEDIUMINT","number");
+        mapSQL_JAVATypes.put("INTEGER","number");
+        mapSQL_JAVATypes.put("BIGINT","number");
+        mapSQL_JAVATypes.put("DECIMAL","number");
+        mapSQL_JAVATypes.put("NUMERIC","number");
+        mapSQL_JAVATypes.put("REAL","number");
+
+
+        // Ottiene la connessione al database e i metadati della tabella; la connessione
+        // viene chiusa, e quindi restituita al pool, al termine della lettura.
+        try (Connection con = db.getConnection()) {
+            DatabaseMetaData meta = con.getMetaData();
+            // Limita la ricerca al database della connessione, non a tutti quelli del server.
+            String autoIncrement = null;
+            try (ResultSet res = meta.getColumns(con.getCatalog(), null, tableName, null)) {
+
+                //itera sul risultato per ottenere informazioni sulle colonne.
+                // I tipi senza corrispondenza, come le date, sono trattati come stringhe.
+                while (res.next()) {
+                    String type = res.getString("TYPE_NAME").replace(" UNSIGNED", "");
+                    tableSchema.add(new Column(
+                            res.getString("COLUMN_NAME"),
+                            mapSQL_JAVATypes.getOrDefault(type, "string"))
+                    );
+                    if ("YES".equals(res.getString("IS_AUTOINCREMENT"))) {
+                        autoIncrement = res.getString("COLUMN_NAME");
+                    }
+                }
+            }
+
+            // La chiave è la chiave primaria, se formata da una sola colonna, oppure la
+            // colonna auto-incrementale.
+            List<String> primaryKey = new ArrayList<>();
+            try (ResultSet res = meta.getPrimaryKeys(con.getCatalog(), null, tableName)) {
+                while (res.next()) {
+                    primaryKey.add(res.getString("COLUMN_NAME"));
+                }
+            }
+            String key = primaryKey.size() == 1 ? primaryKey.get(0) : autoIncrement;
+            for (int i = 0; i < tableSchema.size(); i++) {
+                if (tableSchema.get(i).getColumnName().equals(key) && tableSchema.get(i).isNumber()) {
+                    keyIndex = i;
+                }
+            }
         }
-        res.close();
+    }
+
+    /**
+     * Restituisce la posizione della colonna numerica che identifica le righe della
+     * tabella: la chiave primaria, se formata da una sola colonna, oppure la colonna
+     * auto-incrementale.
+     *
+     * @return la posizione della colonna chiave, oppure -1 se la tabella non ne ha una.
+     */
+    public int getKeyIndex(){
+        return keyIndex;
     }
 
     /**
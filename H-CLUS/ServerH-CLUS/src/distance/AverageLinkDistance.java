@@ -2,12 +2,17 @@ package distance;
 
 import clustering.Cluster;
 import data.Data;
+import data.DistanceMatrix;
+
+import java.util.PrimitiveIterator;
 
 /**
  * Implementazione dell'interfaccia {@link ClusterDistance} che calcola la distanza media
  * tra due cluster utilizzando la distanza euclidea tra i loro esempi.
+ * Se gli esempi hanno un peso la media è pesata, come se ogni esempio fosse ripetuto
+ * tante volte quanto il suo peso.
  */
-public class AverageLinkDistance implements ClusterDistance {
+public class AverageLinkDistance implements LanceWilliamsDistance {
 
     /**
      * Calcola la distanza media tra due cluster utilizzando la distanza euclidea tra tutti i loro esempi.
@@ -19,17 +24,49 @@ public class AverageLinkDistance implements ClusterDistance {
      */
     public double distance(Cluster c1, Cluster c2, Data data) {
         double sumDistance = 0;
-        int count = 0;
+        long count = 0;
+
+        DistanceMatrix matrix = data.getDistanceMatrix();
 
         // Itera su tutti gli esempi dei due cluster
-        for (Integer id1 : c1) {
-            for (Integer id2 : c2) {
-                sumDistance += data.getExample(id1).distance(data.getExample(id2));
-                count++;
+        for (PrimitiveIterator.OfInt it1 = c1.iterator(); it1.hasNext(); ) {
+            int id1 = it1.nextInt();
+            int weight1 = data.getWeight(id1);
+            for (PrimitiveIterator.OfInt it2 = c2.iterator(); it2.hasNext(); ) {
+                int id2 = it2.nextInt();
+                long weight = (long) weight1 * data.getWeight(id2);
+                sumDistance += weight * matrix.get(id1, id2);
+                count += weight;
             }
         }
 
         // Calcola la distanza media, gestendo il caso in cui non ci siano esempi
         return count > 0 ? sumDistance / count : 0;
     }
+
+    /**
+     * Aggiorna la distanza media dopo una fusione come media delle distanze da i e da j
+     * pesata sulle dimensioni dei due cluster fusi.
+     *
+     * @param dki la distanza tra il cluster k e il cluster i.
+     * @param dkj la distanza tra il cluster k e il cluster j.
+     * @param dij la distanza tra il cluster i e il cluster j.
+     * @param ni  il peso totale degli esempi del cluster i.
+     * @param nj  il peso totale degli esempi del cluster j.
+     * @param nk  il peso totale degli esempi del cluster k.
+     * @return la distanza media tra il cluster k e il cluster (i U j).
+     */
+    public double update(double dki, double dkj, double dij, int ni, int nj, int nk) {
+        return ((double) ni * dki + (double) nj * dkj) / ((double) ni + nj);
+    }
+
+    /**
+     * La distanza aggiornata è una media pesata di dki e dkj.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isBoundedByInputs() {
+        return true;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package distance;
+
+import clustering.Cluster;
+import data.Data;
+import data.DistanceMatrix;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * Calcola la distanza completa tra due cluster, cioè la distanza massima tra un
+ * esempio del primo cluster e un esempio del secondo.
+ */
+public class CompleteLinkDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza completa tra due cluster.
+     *
+     * @param c1 il primo cluster.
+     * @param c2 il secondo cluster.
+     * @param d  l'oggetto {@link Data} contenente gli esempi utilizzati per calcolare le distanze.
+     * @return la distanza completa tra i due cluster.
+     */
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        double max = 0;
+
+        DistanceMatrix matrix = d.getDistanceMatrix();
+        for (PrimitiveIterator.OfInt it1 = c1.iterator(); it1.hasNext(); ) {
+            int id1 = it1.nextInt();
+            for (PrimitiveIterator.OfInt it2 = c2.iterator(); it2.hasNext(); ) {
+                double distance = matrix.get(id1, it2.nextInt());
+                if (distance > max) {
+                    max = distance;
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Aggiorna la distanza completa dopo una fusione: la distanza massima da (i U j)
+     * è la maggiore tra le distanze da i e da j.
+     *
+     * @param dki la distanza tra il cluster k e il cluster i.
+     * @param dkj la distanza tra il cluster k e il cluster j.
+     * @param dij la distanza tra il cluster i e il cluster j.
+     * @param ni  il numero di esempi del cluster i.
+     * @param nj  il numero di esempi del cluster j.
+     * @param nk  il numero di esempi del cluster k.
+     * @return la distanza completa tra il cluster k e il cluster (i U j).
+     */
+    public double update(double dki, double dkj, double dij, int ni, int nj, int nk) {
+        return Math.max(dki, dkj);
+    }
+
+    /**
+     * La distanza aggiornata è la maggiore tra dki e dkj.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isBoundedByInputs() {
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,52 @@
+package distance;
+
+/**
+ * Interfaccia per le misure di distanza tra cluster che possono essere aggiornate
+ * in modo incrementale con la formula di Lance-Williams.
+ * Dopo la fusione dei cluster i e j, la distanza tra un qualsiasi cluster k e il
+ * nuovo cluster (i U j) si ricava dalle sole distanze d(k,i), d(k,j), d(i,j) e dalle
+ * dimensioni dei cluster, senza tornare agli esempi. Se gli esempi hanno un peso, la
+ * dimensione di un cluster è il peso totale dei suoi esempi.
+ */
+public interface LanceWilliamsDistance extends ClusterDistance {
+
+    /**
+     * Calcola la distanza tra il cluster k e il cluster ottenuto fondendo i e j.
+     *
+     * @param dki la distanza tra il cluster k e il cluster i.
+     * @param dkj la distanza tra il cluster k e il cluster j.
+     * @param dij la distanza tra il cluster i e il cluster j.
+     * @param ni  il numero di esempi del cluster i.
+     * @param nj  il numero di esempi del cluster j.
+     * @param nk  il numero di esempi del cluster k.
+     * @return la distanza tra il cluster k e il cluster (i U j).
+     */
+    double update(double dki, double dkj, double dij, int ni, int nj, int nk);
+
+    /**
+     * Calcola la distanza tra due cluster formati da un solo esempio a partire dalla
+     * distanza tra i due esempi, senza costruire i cluster. Per le distanze in cui il
+     * peso degli esempi non conta, come quelle predefinite, coincide con la distanza
+     * tra gli esempi.
+     *
+     * @param dij la distanza tra gli esempi i e j.
+     * @param wi  il peso dell'esempio i.
+     * @param wj  il peso dell'esempio j.
+     * @return la distanza tra i cluster {i} e {j}.
+     */
+    default double initial(double dij, int wi, int wj) {
+        return dij;
+    }
+
+    /**
+     * Indica se la distanza aggiornata da {@link #update} è sempre compresa tra la
+     * minore e la maggiore di dki e dkj. In tal caso le distanze tra cluster non escono
+     * mai dall'intervallo delle distanze tra gli esempi e possono essere memorizzate con
+     * la stessa quantizzazione.
+     *
+     * @return true se l'aggiornamento non esce dall'intervallo di dki e dkj.
+     */
+    default boolean isBoundedByInputs() {
+        return false;
+    }
+}
\ No newline at end of file
@@ -2,12 +2,14 @@ package distance;
 
 import clustering.Cluster;
 import data.Data;
-import data.Example;
+import data.DistanceMatrix;
+
+import java.util.PrimitiveIterator;
 
 /**
  * Calcola la distanza singola tra due cluster.
  */
-public class SingleLinkDistance implements ClusterDistance {
+public class SingleLinkDistance implements LanceWilliamsDistance {
 
     /**
      * Calcola la distanza singola tra due cluster.
@@ -20,10 +22,11 @@ public class SingleLinkDistance implements ClusterDistance {
     public double distance(Cluster c1, Cluster c2, Data d) {
         double min = Double.MAX_VALUE;
 
-        for (Integer id1 : c1) {
-            Example e1 = d.getExample(id1);
-            for (Integer id2 : c2) {
-                double distance = e1.distance(d.getExample(id2));
+        DistanceMatrix matrix = d.getDistanceMatrix();
+        for (PrimitiveIterator.OfInt it1 = c1.iterator(); it1.hasNext(); ) {
+            int id1 = it1.nextInt();
+            for (PrimitiveIterator.OfInt it2 = c2.iterator(); it2.hasNext(); ) {
+                double distance = matrix.get(id1, it2.nextInt());
                 if (distance < min) {
                     min = distance;
                 }
@@ -31,4 +34,30 @@ public class SingleLinkDistance implements ClusterDistance {
         }
         return min;
     }
+
+    /**
+     * Aggiorna la distanza singola dopo una fusione: la distanza minima da (i U j)
+     * è la minore tra le distanze da i e da j.
+     *
+     * @param dki la distanza tra il cluster k e il cluster i.
+     * @param dkj la distanza tra il cluster k e il cluster j.
+     * @param dij la distanza tra il cluster i e il cluster j.
+     * @param ni  il numero di esempi del cluster i.
+     * @param nj  il numero di esempi del cluster j.
+     * @param nk  il numero di esempi del cluster k.
+     * @return la distanza singola tra il cluster k e il cluster (i U j).
+     */
+    public double update(double dki, double dkj, double dij, int ni, int nj, int nk) {
+        return Math.min(dki, dkj);
+    }
+
+    /**
+     * La distanza aggiornata è la minore tra dki e dkj.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isBoundedByInputs() {
+        return true;
+    }
 }
\ No newline at end of file
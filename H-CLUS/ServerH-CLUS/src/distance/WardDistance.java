@@ -0,0 +1,76 @@
+package distance;
+
+import clustering.Cluster;
+import clustering.ClusterStatistics;
+import data.Data;
+
+/**
+ * Calcola la distanza di Ward tra due cluster A e B, definita come
+ * 2 nA nB / (nA + nB) ||cA - cB||^2, dove nA, nB sono le dimensioni dei cluster e
+ * cA, cB i loro centroidi. È il doppio dell'aumento della somma dei quadrati delle
+ * distanze dai centroidi causato dalla fusione; con il fattore 2 la distanza tra due
+ * singoli esempi coincide con la loro distanza euclidea al quadrato, la stessa usata
+ * dalle altre misure di distanza. Se gli esempi hanno un peso, dimensioni e centroidi
+ * sono pesati.
+ * <p>
+ * La distanza usa le {@link ClusterStatistics} di ogni cluster, cioè dimensione, somma e
+ * norma al quadrato degli esempi: la distanza tra due cluster costa O(d) invece di
+ * O(|A|·|B|·d). Le statistiche sono memorizzate nel cluster e, alla fusione, quelle del
+ * nuovo cluster sono combinate in O(d) dalle statistiche dei due cluster fusi.
+ */
+public class WardDistance implements LanceWilliamsDistance {
+
+    /**
+     * Calcola la distanza di Ward tra due cluster.
+     *
+     * @param c1 il primo cluster.
+     * @param c2 il secondo cluster.
+     * @param d  l'oggetto {@link Data} contenente gli esempi utilizzati per calcolare le distanze.
+     * @return la distanza di Ward tra i due cluster.
+     */
+    public double distance(Cluster c1, Cluster c2, Data d) {
+        ClusterStatistics s1 = c1.getStatistics(d);
+        ClusterStatistics s2 = c2.getStatistics(d);
+        long n1 = s1.getSize();
+        long n2 = s2.getSize();
+        if (n1 == 0 || n2 == 0) {
+            return 0;
+        }
+
+        double squaredDistance = 0;
+        for (int a = 0; a < s1.getNumberOfAttributes(); a++) {
+            double diff = s1.getSum(a) / n1 - s2.getSum(a) / n2;
+            squaredDistance += diff * diff;
+        }
+        return 2.0 * n1 * n2 / (double) (n1 + n2) * squaredDistance;
+    }
+
+    /**
+     * Aggiorna la distanza di Ward dopo una fusione con la formula di Lance-Williams.
+     *
+     * @param dki la distanza tra il cluster k e il cluster i.
+     * @param dkj la distanza tra il cluster k e il cluster j.
+     * @param dij la distanza tra il cluster i e il cluster j.
+     * @param ni  il peso totale degli esempi del cluster i.
+     * @param nj  il peso totale degli esempi del cluster j.
+     * @param nk  il peso totale degli esempi del cluster k.
+     * @return la distanza di Ward tra il cluster k e il cluster (i U j).
+     */
+    public double update(double dki, double dkj, double dij, int ni, int nj, int nk) {
+        return (((double) ni + nk) * dki + ((double) nj + nk) * dkj - (double) nk * dij) / ((double) ni + nj + nk);
+    }
+
+    /**
+     * Calcola la distanza di Ward tra due esempi pesati, 2 wi wj / (wi + wj) d(i,j):
+     * per esempi di peso 1 coincide con la loro distanza.
+     *
+     * @param dij la distanza euclidea al quadrato tra gli esempi i e j.
+     * @param wi  il peso dell'esempio i.
+     * @param wj  il peso dell'esempio j.
+     * @return la distanza di Ward tra i cluster {i} e {j}.
+     */
+    @Override
+    public double initial(double dij, int wi, int wj) {
+        return 2.0 * wi * wj / ((double) wi + wj) * dij;
+    }
+}
\ No newline at end of file
@@ -1,15 +1,23 @@
 package server;
 
+import clustering.CancellationToken;
 import clustering.HierachicalClusterMiner;
 import clustering.InvalidDepthException;
 import clustering.InvalidSizeException;
+import clustering.MiningStrategy;
 
 import data.Data;
+import data.DataCache;
+import data.KdTree;
 import data.NoDataException;
 
+import database.DbAccess;
+
 import distance.AverageLinkDistance;
 import distance.ClusterDistance;
+import distance.CompleteLinkDistance;
 import distance.SingleLinkDistance;
+import distance.WardDistance;
 
 import java.io.NotSerializableException;
 import java.io.ObjectOutputStream;
@@ -26,11 +34,48 @@ import java.net.SocketException;
  * da un database o da file.
  */
 public class ServerOneClient extends Thread {
+    /**
+     * Tempo massimo in millisecondi di un clustering richiesto da un client, letto dalla
+     * proprietà di sistema {@code hclus.mine.timeBudget}; 0, il valore predefinito, indica
+     * nessun limite.
+     */
+    private static final long TIME_BUDGET_MILLIS = Long.getLong("hclus.mine.timeBudget", 0L);
+    /**
+     * Distanza massima di fusione, letta dalla proprietà di sistema {@code hclus.mine.maxHeight}.
+     */
+    private static final double MAX_MERGE_HEIGHT =
+            Double.parseDouble(System.getProperty("hclus.mine.maxHeight", "Infinity"));
+    /**
+     * Numero di cluster a cui fermare il clustering, letto dalla proprietà di sistema
+     * {@code hclus.mine.targetClusters}.
+     */
+    private static final int TARGET_CLUSTERS = Integer.getInteger("hclus.mine.targetClusters", 1);
+    /**
+     * Indica se le righe identiche delle tabelle vengono raggruppate in esempi pesati,
+     * letto dalla proprietà di sistema {@code hclus.data.collapseDuplicates}.
+     */
+    private static final boolean COLLAPSE_DUPLICATES = Boolean.getBoolean("hclus.data.collapseDuplicates");
+    /**
+     * Numero massimo di esempi di una tabella, letto dalla proprietà di sistema
+     * {@code hclus.data.maxExamples}: se è positivo le tabelle vengono riassunte in al più
+     * tanti esempi pesati con {@link Data#preCluster(String, int)}.
+     */
+    private static final int MAX_EXAMPLES = Integer.getInteger("hclus.data.maxExamples", 0);
+    /**
+     * Comando con cui il client annulla il clustering in corso.
+     */
+    private static final int CANCEL = 4;
+    /**
+     * Prefisso dei messaggi di avanzamento inviati durante il clustering.
+     */
+    private static final String PROGRESS = "PROGRESS ";
+
     private Socket socket;
     private ObjectInputStream in;
     private ObjectOutputStream out;
     private HierachicalClusterMiner hierachical;
     private Data data;
+    private DataCache.Handle dataHandle; // riferimento a data nella cache condivisa, oppure null
 
 
     /**
@@ -50,14 +95,20 @@ public class ServerOneClient extends Thread {
      * Metodo principale del thread che gestisce le operazioni richieste dal client.
      * Le operazioni possibili sono:
      * - 0: caricamento di una tabella dal database;
-     * - 1: apprendimento dei cluster dalla tabella del database;
-     * - 2: salvataggio dei cluster in un file;
-     * - 3: apprendimento dei cluster da un file.
+     * - 1: apprendimento dei cluster dalla tabella del database e salvataggio in un file;
+     * - 2: apprendimento dei cluster da un file;
+     * - 3: come 1, inviando l'avanzamento durante il clustering;
+     * - 4: annullamento del clustering avviato con il comando 3;
+     * - 5: apprendimento dei cluster dalla tabella del database con più distanze;
+     * - 6: aggiornamento dell'ultimo dendrogramma con le righe aggiunte alla tabella,
+     *   incrementale solo con la distanza single-link.
      */
     public void run() {
         try {
+            Object pending = null; // comando già letto durante il clustering con avanzamento
             while (true) {
-                int comando = (int) in.readObject();
+                int comando = (int) (pending != null ? pending : in.readObject());
+                pending = null;
                 switch (comando) {
 
                     case 0:
@@ -72,6 +123,22 @@ public class ServerOneClient extends Thread {
                     case 2:
                         handleLearningFromFile();
                         break;
+
+                    case 3:
+                        pending = handleLearningWithProgress();
+                        break;
+
+                    case 5:
+                        handleMultiLinkageLearning();
+                        break;
+
+                    case 6:
+                        handleInsertNewRows();
+                        break;
+
+                    case CANCEL:
+                        // nessun clustering in corso: la richiesta è arrivata dopo la risposta
+                        break;
                 }
             }
         } catch (EOFException e) {
@@ -84,6 +151,9 @@ public class ServerOneClient extends Thread {
             try {
                 socket.close();
                 System.out.println("Connessione con il client terminata.");
+                System.out.println("Pool delle connessioni: " + DbAccess.getPool());
+                releaseData();
+                System.out.println("Cache dei dataset: " + DataCache.getInstance());
             } catch (IOException e) {
                 System.out.println("Errore durante la chiusura del socket: " + e.getMessage());
             }
@@ -98,7 +168,10 @@ public class ServerOneClient extends Thread {
     private void handleStoreTableFromDb() throws IOException {
         try {
             String tableName = (String) in.readObject();
-            data = new Data(tableName);
+            DataCache.Handle loaded = DataCache.getInstance().acquire(tableName, COLLAPSE_DUPLICATES, MAX_EXAMPLES);
+            releaseData();
+            dataHandle = loaded;
+            data = loaded.getData();
             out.writeObject("OK");
         } catch (NoDataException e) {
             out.writeObject("Errore: impossibile trovare i dati per la tabella specificata.");
@@ -115,10 +188,22 @@ public class ServerOneClient extends Thread {
         }
     }
 
+    /**
+     * Rilascia il riferimento al dataset nella cache condivisa, se presente.
+     */
+    private void releaseData() {
+        if (dataHandle != null) {
+            dataHandle.close();
+            dataHandle = null;
+        }
+    }
+
     /**
      * Gestisce l'operazione di apprendimento dei cluster dalla tabella del database.
      * Invia una risposta al client indicando lo stato dell'operazione e, in caso di successo,
-     * i risultati del clustering.
+     * i risultati del clustering. Il clustering rispetta i limiti di tempo, distanza e
+     * numero di cluster configurati per il server: se si ferma prima, il risultato
+     * contiene i livelli completati ed è preceduto da un avviso.
      *
      * @throws IOException se si verifica un errore di I/O durante l'operazione.
      */
@@ -126,16 +211,11 @@ public class ServerOneClient extends Thread {
         try {
             int k = (int) in.readObject();
             int distanceType = (int) in.readObject();
-            hierachical = new HierachicalClusterMiner(k);
-            ClusterDistance distance;
-            if (distanceType == 1) {
-                distance = new SingleLinkDistance();
-            } else {
-                distance = new AverageLinkDistance();
-            }
+            ClusterDistance distance = createDistance(distanceType);
+            hierachical = createMiner(k, distance);
             hierachical.mine(data, distance);
             out.writeObject("OK");
-            out.writeObject(hierachical.toString(data));
+            out.writeObject(describe(hierachical));
         } catch (InvalidDepthException e) {
             out.writeObject("Errore: la profondità specificata non è valida. Fornire un valore corretto.");
             System.out.println("Eccezione di profondità non valida: " + e.getMessage());
@@ -151,6 +231,246 @@ public class ServerOneClient extends Thread {
         }
     }
 
+    /**
+     * Gestisce l'apprendimento dei cluster dalla tabella del database con più misure di
+     * distanza: il client invia la profondità e un vettore di tipi di distanza, e riceve
+     * "OK" seguito da un'unica stringa con i dendrogrammi di tutte le distanze.
+     * Le distanze tra gli esempi sono calcolate una sola volta e i dendrogrammi sono
+     * costruiti in parallelo. Il risultato non viene salvato su file.
+     *
+     * @throws IOException se si verifica un errore di I/O durante l'operazione.
+     */
+    private void handleMultiLinkageLearning() throws IOException {
+        try {
+            int k = (int) in.readObject();
+            int[] distanceTypes = (int[]) in.readObject();
+            HierachicalClusterMiner[] miners = new HierachicalClusterMiner[distanceTypes.length];
+            ClusterDistance[] distances = new ClusterDistance[distanceTypes.length];
+            for (int i = 0; i < distanceTypes.length; i++) {
+                distances[i] = createDistance(distanceTypes[i]);
+                miners[i] = createMiner(k, distances[i]);
+            }
+            HierachicalClusterMiner.mineAll(data, miners, distances);
+
+            StringBuilder result = new StringBuilder();
+            for (int i = 0; i < miners.length; i++) {
+                result.append("Distanza utilizzata: ").append(distances[i].getClass().getSimpleName()).append("\n")
+                        .append(describe(miners[i])).append("\n");
+            }
+            out.writeObject("OK");
+            out.writeObject(result.toString());
+        } catch (InvalidDepthException e) {
+            out.writeObject("Errore: la profondità specificata non è valida. Fornire un valore corretto.");
+            System.out.println("Eccezione di profondità non valida: " + e.getMessage());
+        } catch (InvalidSizeException e) {
+            out.writeObject("Errore: la dimensione specificata non è valida. Verifica le impostazioni.");
+            System.out.println("Eccezione di dimensione non valida: " + e.getMessage());
+        } catch (Exception e) {
+            out.writeObject("Errore imprevisto: si è verificato un problema imprevisto. Verifica i dettagli: " + e.getMessage());
+            System.out.println("Errore generico durante l'elaborazione: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gestisce l'aggiornamento dell'ultimo dendrogramma appreso con le righe aggiunte alla
+     * tabella dopo il caricamento: legge solo le nuove righe e, con la distanza
+     * single-link, le inserisce nel dendrogramma senza ripetere il clustering; con le
+     * altre distanze il clustering viene ripetuto su tutti i dati.
+     * Il client riceve "OK" seguito dal numero di righe aggiunte, dal modo in cui il
+     * dendrogramma è stato aggiornato e dal dendrogramma.
+     *
+     * @throws IOException se si verifica un errore di I/O durante l'operazione.
+     */
+    private void handleInsertNewRows() throws IOException {
+        if (hierachical == null || data == null) {
+            out.writeObject("Errore: non c'è un dendrogramma appreso da aggiornare.");
+            return;
+        }
+        try {
+            Data updated = data.withNewRows();
+            int added = updated.getNumberOfExamples() - data.getNumberOfExamples();
+            if (added == 0) {
+                out.writeObject("OK");
+                out.writeObject("Righe aggiunte: 0\n" + describe(hierachical));
+                return;
+            }
+            boolean incremental = hierachical.insertExamples(updated);
+            // Il dataset esteso appartiene solo a questo client
+            releaseData();
+            data = updated;
+            out.writeObject("OK");
+            out.writeObject("Righe aggiunte: " + added + "\n"
+                    + (incremental ? "Dendrogramma aggiornato in modo incrementale.\n"
+                    : "La distanza non consente l'aggiornamento incrementale: clustering ripetuto su tutti i dati.\n")
+                    + describe(hierachical));
+        } catch (NoDataException e) {
+            out.writeObject("Errore: impossibile leggere le nuove righe della tabella.");
+            System.out.println("Eccezione di dati non trovati: " + e.getMessage());
+        } catch (InvalidSizeException e) {
+            out.writeObject("Errore: la dimensione specificata non è valida. Verifica le impostazioni.");
+            System.out.println("Eccezione di dimensione non valida: " + e.getMessage());
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            out.writeObject("Errore: " + e.getMessage());
+            System.out.println("Aggiornamento non possibile: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Crea il miner per una richiesta di clustering, con i limiti configurati per il server.
+     * Il single-link su tabelle con pochi attributi usa l'albero ricoprente minimo
+     * costruito con un indice spaziale.
+     *
+     * @param depth    la profondità del dendrogramma.
+     * @param distance la misura di distanza che verrà usata.
+     * @return il miner configurato.
+     * @throws InvalidDepthException se la profondità è minore o uguale a zero.
+     */
+    private HierachicalClusterMiner createMiner(int depth, ClusterDistance distance) throws InvalidDepthException {
+        HierachicalClusterMiner miner = new HierachicalClusterMiner(depth);
+        if (distance instanceof SingleLinkDistance && data != null
+                && data.getNumberOfAttributes() <= KdTree.MAX_EFFECTIVE_DIMENSIONS) {
+            miner.setStrategy(MiningStrategy.SINGLE_LINK_BORUVKA);
+        }
+        miner.setTimeBudgetMillis(TIME_BUDGET_MILLIS);
+        miner.setMaxMergeHeight(MAX_MERGE_HEIGHT);
+        miner.setTargetClusters(TARGET_CLUSTERS);
+        return miner;
+    }
+
+    /**
+     * Restituisce la misura di distanza richiesta dal client.
+     *
+     * @param distanceType 1 per la distanza single-link, 3 per complete-link, 4 per Ward,
+     *                     altrimenti average-link.
+     * @return la misura di distanza tra cluster.
+     */
+    private static ClusterDistance createDistance(int distanceType) {
+        switch (distanceType) {
+            case 1:
+                return new SingleLinkDistance();
+            case 3:
+                return new CompleteLinkDistance();
+            case 4:
+                return new WardDistance();
+            default:
+                return new AverageLinkDistance();
+        }
+    }
+
+    /**
+     * Restituisce il risultato del clustering da inviare al client, preceduto da un avviso
+     * se il clustering si è fermato prima di calcolare tutti i livelli.
+     *
+     * @param miner il miner che ha eseguito il clustering.
+     * @return la rappresentazione del dendrogramma.
+     */
+    private String describe(HierachicalClusterMiner miner) {
+        if (miner.isStoppedEarly()) {
+            return "Clustering interrotto dopo " + miner.getNumberOfLevels()
+                    + " livelli per i limiti di distanza, numero di cluster o tempo, o perché annullato.\n"
+                    + miner.toString(data);
+        }
+        return miner.toString(data);
+    }
+
+    /**
+     * Gestisce l'apprendimento dei cluster dalla tabella del database inviando al client
+     * l'avanzamento. Il clustering viene eseguito in un thread separato, mentre questo
+     * thread continua a leggere dal client per ricevere il comando di annullamento.
+     * Durante il clustering il client riceve messaggi che iniziano con "PROGRESS ",
+     * seguiti dalla risposta finale come per il comando 1; se la risposta è "OK" il
+     * client invia il nome del file in cui salvare il dendrogramma.
+     * Se il client chiude la connessione il clustering viene annullato.
+     *
+     * @return il comando successivo del client, se è stato letto al posto del nome del
+     * file, altrimenti null.
+     * @throws IOException            se si verifica un errore di I/O durante l'operazione.
+     * @throws ClassNotFoundException se il client invia un oggetto di classe sconosciuta.
+     */
+    private Object handleLearningWithProgress() throws IOException, ClassNotFoundException {
+        HierachicalClusterMiner miner;
+        ClusterDistance distance;
+        try {
+            int k = (int) in.readObject();
+            distance = createDistance((int) in.readObject());
+            miner = createMiner(k, distance);
+        } catch (InvalidDepthException e) {
+            out.writeObject("Errore: la profondità specificata non è valida. Fornire un valore corretto.");
+            System.out.println("Eccezione di profondità non valida: " + e.getMessage());
+            return null;
+        }
+
+        CancellationToken token = new CancellationToken();
+        miner.setCancellationToken(token);
+        miner.setProgressListener((completed, total, rate, remaining) -> send(PROGRESS + completed + "/" + total
+                + " fusioni, " + String.format("%.1f", rate) + " fusioni/s"
+                + (remaining >= 0 ? ", tempo stimato " + (remaining + 999) / 1000 + " s" : "")));
+
+        boolean[] mined = new boolean[1];
+        Thread worker = new Thread(() -> {
+            try {
+                miner.mine(data, distance);
+                mined[0] = true;
+                send("OK");
+                send(describe(miner));
+            } catch (Exception e) {
+                send("Errore imprevisto: si è verificato un problema imprevisto. Verifica i dettagli: " + e.getMessage());
+                System.out.println("Errore generico durante l'elaborazione: " + e.getMessage());
+            }
+        }, getName() + "-mine");
+        worker.start();
+
+        try {
+            while (true) {
+                Object message = in.readObject();
+                if (Integer.valueOf(CANCEL).equals(message)) {
+                    token.cancel();
+                    continue;
+                }
+                joinQuietly(worker);
+                if (mined[0] && message instanceof String) {
+                    hierachical = miner;
+                    storeCluster((String) message);
+                    return null;
+                }
+                return message;
+            }
+        } finally {
+            // se la connessione si interrompe il clustering non serve più
+            token.cancel();
+            joinQuietly(worker);
+        }
+    }
+
+    /**
+     * Invia un messaggio al client, ignorando gli errori di una connessione già chiusa.
+     *
+     * @param message il messaggio da inviare.
+     */
+    private void send(String message) {
+        synchronized (out) {
+            try {
+                out.writeObject(message);
+                out.flush();
+            } catch (IOException e) {
+                System.out.println("Errore di I/O: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Attende la fine di un thread, mantenendo lo stato di interruzione del thread corrente.
+     *
+     * @param thread il thread da attendere.
+     */
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Gestisce l'operazione di apprendimento dei cluster da un file.
      * Invia una risposta al client indicando lo stato dell'operazione e, in caso di successo,
@@ -180,7 +500,21 @@ public class ServerOneClient extends Thread {
     }
     private void handleStoreClusterInFile() throws IOException {
         try {
-            String nomeFile = (String) in.readObject();
+            storeCluster((String) in.readObject());
+        } catch (Exception e) {
+            out.writeObject("Errore di salvataggio: " + e.getMessage());
+            System.out.println("Error saving file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Salva il dendrogramma appreso nel file specificato e invia l'esito al client.
+     *
+     * @param nomeFile il nome del file in cui salvare il dendrogramma.
+     * @throws IOException se si verifica un errore di I/O durante la risposta al client.
+     */
+    private void storeCluster(String nomeFile) throws IOException {
+        try {
             hierachical.salva(nomeFile);
             out.writeObject("OK");
         } catch (Exception e) {